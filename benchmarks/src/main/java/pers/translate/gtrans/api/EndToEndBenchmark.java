@@ -0,0 +1,67 @@
+package pers.translate.gtrans.api;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import pers.translate.gtrans.bench.Inputs;
+import pers.translate.gtrans.bench.StubServer;
+import pers.translate.gtrans.http.HttpClient4;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * translate call against a local stub server, covers token, request, network stack & parsing
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EndToEndBenchmark {
+
+    @Param({"1", "16", "128"})
+    public int items;
+
+    @Param({"64"})
+    public int size;
+
+    @Param({"ASCII", "CJK", "EMOJI"})
+    public Inputs.Script script;
+
+    private StubServer server;
+    private HttpClient4 httpClient4;
+    private GoogleTranslate googleTranslate;
+    private List<String> source;
+
+    @Setup
+    public void setup() throws IOException {
+        source = Inputs.texts(script, items, size);
+        // responses are generated per request, chunked calls get the right size for every chunk
+        server = StubServer.custom().start();
+        httpClient4 = server.newClient();
+        googleTranslate = new GoogleTranslate(httpClient4);
+    }
+
+    @TearDown
+    public void tearDown() {
+        httpClient4.shutdown();
+        server.stop();
+    }
+
+    @Benchmark
+    public List<String> translate() throws IOException {
+        return googleTranslate.translate(source, "en", "zh-CN");
+    }
+}
@@ -0,0 +1,66 @@
+package pers.translate.gtrans.api;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pers.translate.gtrans.bench.Inputs;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * json response parsing from the body bytes, items = 1 takes the single result shape
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+
+    @Param({"1", "16", "128"})
+    public int items;
+
+    @Param({"64"})
+    public int size;
+
+    @Param({"ASCII", "CJK", "EMOJI"})
+    public Inputs.Script script;
+
+    private String response;
+    private byte[] body;
+
+    @Setup
+    public void setup() {
+        response = Inputs.response(Inputs.texts(script, items, size), "zh-CN");
+        body = response.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public List<String> translation() throws IOException {
+        return new JsonResultParser(false, items).parse(new ByteArrayInputStream(body));
+    }
+
+    @Benchmark
+    public List<String> detection() throws IOException {
+        return new JsonResultParser(true, items).parse(new ByteArrayInputStream(body));
+    }
+
+    @Benchmark
+    public List<String> translationOfString() throws IOException {
+        return new JsonResultParser(false, items).parse(new StringReader(response));
+    }
+}
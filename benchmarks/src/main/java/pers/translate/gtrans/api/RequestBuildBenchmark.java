@@ -0,0 +1,58 @@
+package pers.translate.gtrans.api;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pers.translate.gtrans.bench.Inputs;
+import pers.translate.gtrans.http.ParamPairList;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * api url (with tk) & post data building of one request
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestBuildBenchmark {
+
+    @Param({"1", "16", "128"})
+    public int items;
+
+    @Param({"64"})
+    public int size;
+
+    @Param({"ASCII", "CJK", "EMOJI"})
+    public Inputs.Script script;
+
+    private GoogleTranslate googleTranslate;
+    private List<String> source;
+
+    @Setup
+    public void setup() {
+        googleTranslate = new GoogleTranslate();
+        source = Inputs.texts(script, items, size);
+    }
+
+    @Benchmark
+    public String buildApiUrl() {
+        return googleTranslate.buildApiUrl(source, "en", "zh-CN");
+    }
+
+    @Benchmark
+    public ParamPairList getPostData() {
+        return googleTranslate.getPostData(source);
+    }
+}
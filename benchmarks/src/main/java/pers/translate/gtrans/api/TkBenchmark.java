@@ -0,0 +1,48 @@
+package pers.translate.gtrans.api;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pers.translate.gtrans.bench.Inputs;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * tk calculation
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TkBenchmark {
+
+    @Param({"16", "256", "4096"})
+    public int size;
+
+    @Param({"ASCII", "CJK", "EMOJI"})
+    public Inputs.Script script;
+
+    private GoogleTranslate googleTranslate;
+    private String source;
+
+    @Setup
+    public void setup() {
+        googleTranslate = new GoogleTranslate();
+        source = Inputs.text(script, size);
+    }
+
+    @Benchmark
+    public String calculateTk() {
+        return googleTranslate.calculateTk(source);
+    }
+}
@@ -0,0 +1,109 @@
+package pers.translate.gtrans.bench;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmark inputs, deterministic for every script & size
+ */
+public final class Inputs {
+
+    /**
+     * script of generated text
+     */
+    public enum Script {
+        ASCII("The quick brown fox jumps over the lazy dog. "),
+        CJK("敏捷的棕色狐狸跳过了懒狗。天气很好，我们去公园散步吧。"),
+        EMOJI("😀🚀🌍👍🎉 ");
+
+        private final String sample;
+
+        Script(String sample) {
+            this.sample = sample;
+        }
+    }
+
+    private Inputs() {}
+
+    /**
+     * text of script
+     * @param script script
+     * @param codePoints length in code points
+     * @return text
+     */
+    public static String text(Script script, int codePoints) {
+        StringBuilder builder = new StringBuilder();
+        int[] sample = script.sample.codePoints().toArray();
+        for (int i = 0; i < codePoints; i++)
+            builder.appendCodePoint(sample[i % sample.length]);
+        return builder.toString();
+    }
+
+    /**
+     * distinct texts of script
+     * @param script script
+     * @param items number of texts
+     * @param codePoints length of every text in code points
+     * @return List texts
+     */
+    public static List<String> texts(Script script, int items, int codePoints) {
+        List<String> texts = new ArrayList<>(items);
+        String base = text(script, codePoints);
+        for (int i = 0; i < items; i++) {
+            // rotate so no two items are equal
+            int shift = base.offsetByCodePoints(0, i % codePoints);
+            texts.add(base.substring(shift) + base.substring(0, shift));
+        }
+        return texts;
+    }
+
+    /**
+     * response of translate api for source, shape depends on number of sources
+     * @param source List source
+     * @param toLang target language
+     * @return json response
+     */
+    public static String response(List<String> source, String toLang) {
+        return response(source, "en", toLang);
+    }
+
+    /**
+     * response of translate api for source, shape depends on number of sources
+     * @param source List source
+     * @param detected language detected for every source
+     * @param toLang target language
+     * @return json response
+     */
+    public static String response(List<String> source, String detected, String toLang) {
+        if (source.size() == 1) {
+            // ["hallo","en"]
+            JsonArray single = new JsonArray();
+            single.add(translation(source.get(0), toLang));
+            single.add(detected);
+            return single.toString();
+        }
+        // [[[[["hallo"]],null,"en"],[[["welt"]],null,"en"]]]
+        JsonArray items = new JsonArray();
+        for (String item : source) {
+            JsonArray text = new JsonArray();
+            text.add(translation(item, toLang));
+            JsonArray texts = new JsonArray();
+            texts.add(text);
+            JsonArray entry = new JsonArray();
+            entry.add(texts);
+            entry.add(JsonNull.INSTANCE);
+            entry.add(detected);
+            items.add(entry);
+        }
+        JsonArray bulk = new JsonArray();
+        bulk.add(items);
+        return bulk.toString();
+    }
+
+    private static String translation(String source, String toLang) {
+        return "[" + toLang + "] " + source;
+    }
+}
@@ -0,0 +1,229 @@
+package pers.translate.gtrans.bench;
+
+import pers.translate.gtrans.api.EndpointPool;
+import pers.translate.gtrans.api.GoogleTranslate;
+import pers.translate.gtrans.http.HttpClient4;
+import pers.translate.gtrans.http.ResponseRecordings;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Closed loop load test of GoogleTranslate against a local StubServer
+ * <p>
+ * Every combination of pool size & concurrency runs for a fixed time, each caller sends the next
+ * request as soon as the previous one returns. Reports throughput & exact latency percentiles, so
+ * the point where more callers or connections stop adding throughput shows up offline.
+ * <pre>
+ * java -cp target/benchmarks.jar pers.translate.gtrans.bench.LoadGenerator \
+ *     --concurrency 1,8,32,128 --pool 8,32,128 --latency exp:40 --error-rate 0.01 --throttle-rate 0.02
+ * </pre>
+ * With '--record dir' every distinct request is sent once to the real api & its response saved,
+ * a later run with '--replay dir' lets the stub server answer with those responses.
+ */
+public class LoadGenerator {
+
+    private static final Map<String, String> DEFAULTS = new HashMap<>();
+
+    static {
+        DEFAULTS.put("concurrency", "1,8,32,128");
+        DEFAULTS.put("pool", "8,32,128");
+        DEFAULTS.put("duration", "10");
+        DEFAULTS.put("warmup", "2");
+        DEFAULTS.put("items", "16");
+        DEFAULTS.put("size", "64");
+        DEFAULTS.put("script", "ASCII");
+        DEFAULTS.put("distinct", "64");
+        DEFAULTS.put("from", "en");
+        DEFAULTS.put("to", "zh-CN");
+        DEFAULTS.put("latency", "fixed:20");
+        DEFAULTS.put("error-rate", "0");
+        DEFAULTS.put("throttle-rate", "0");
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>(DEFAULTS);
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--"))
+                throw new IllegalArgumentException("expected --option value: " + args[i]);
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+
+        List<List<String>> requests = requests(options);
+        String fromLang = options.get("from"), toLang = options.get("to");
+        if (options.containsKey("record")) {
+            record(new ResponseRecordings(Paths.get(options.get("record"))), requests, fromLang, toLang);
+            return;
+        }
+
+        StubServer.Builder stub = StubServer.custom()
+                .setLatency(StubServer.Latency.parse(options.get("latency")))
+                .setErrorRate(Double.parseDouble(options.get("error-rate")))
+                .setThrottleRate(Double.parseDouble(options.get("throttle-rate")));
+        if (options.containsKey("replay"))
+            stub.setRecordings(new ResponseRecordings(Paths.get(options.get("replay"))));
+        StubServer server = stub.start();
+
+        long duration = TimeUnit.SECONDS.toNanos(Long.parseLong(options.get("duration")));
+        long warmup = TimeUnit.SECONDS.toNanos(Long.parseLong(options.get("warmup")));
+        System.out.printf("%6s %11s %10s %9s %9s %9s %9s %9s %8s%n",
+                "pool", "concurrency", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "errors");
+        try {
+            for (int pool : ints(options.get("pool"))) {
+                HttpClient4 client = HttpClient4.custom()
+                        .setPoolMaxConnection(pool)
+                        .setPoolMaxPerRoute(pool)
+                        .build();
+                try (GoogleTranslate googleTranslate = new GoogleTranslate(client)) {
+                    googleTranslate.setEndpointPool(EndpointPool.of(server.endpoint()));
+                    for (int concurrency : ints(options.get("concurrency"))) {
+                        run(googleTranslate, requests, fromLang, toLang, concurrency, warmup);
+                        Result result = run(googleTranslate, requests, fromLang, toLang, concurrency, duration);
+                        System.out.printf("%6d %11d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f %8d%n", pool, concurrency,
+                                result.throughput(), result.percentile(0.5), result.percentile(0.9),
+                                result.percentile(0.99), result.percentile(0.999), result.percentile(1),
+                                result.errors);
+                    }
+                } finally {
+                    client.close();
+                }
+            }
+            System.out.printf("stub: requests=%d injected 503=%d injected 429=%d%n",
+                    server.getRequests(), server.getErrors(), server.getThrottled());
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * distinct requests of generated texts
+     */
+    private static List<List<String>> requests(Map<String, String> options) {
+        int items = Integer.parseInt(options.get("items"));
+        int distinct = Integer.parseInt(options.get("distinct"));
+        List<String> texts = Inputs.texts(Inputs.Script.valueOf(options.get("script")), items * distinct,
+                Integer.parseInt(options.get("size")));
+        List<List<String>> requests = new ArrayList<>(distinct);
+        for (int i = 0; i < distinct; i++)
+            requests.add(texts.subList(i * items, (i + 1) * items));
+        return requests;
+    }
+
+    /**
+     * send every request once to the real api & save its response
+     */
+    private static void record(ResponseRecordings recordings, List<List<String>> requests, String fromLang,
+                               String toLang) throws IOException {
+        HttpClient4 client = HttpClient4.custom().setTransport(recordings::record).build();
+        try (GoogleTranslate googleTranslate = new GoogleTranslate(client)) {
+            for (List<String> request : requests)
+                googleTranslate.translate(request, fromLang, toLang);
+        } finally {
+            client.close();
+        }
+        System.out.printf("recorded %d requests to %s%n", requests.size(), recordings.getDir());
+    }
+
+    /**
+     * run callers for a time
+     */
+    private static Result run(final GoogleTranslate googleTranslate, final List<List<String>> requests,
+                              final String fromLang, final String toLang, int concurrency, long duration)
+            throws Exception {
+        ExecutorService callers = Executors.newFixedThreadPool(concurrency);
+        final AtomicInteger next = new AtomicInteger();
+        final long start = System.nanoTime();
+        final long end = start + duration;
+        List<Future<Latencies>> futures = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++)
+            futures.add(callers.submit(() -> {
+                Latencies latencies = new Latencies();
+                long now;
+                while (end - (now = System.nanoTime()) > 0) {
+                    List<String> request = requests.get(Math.floorMod(next.getAndIncrement(), requests.size()));
+                    try {
+                        googleTranslate.translate(request, fromLang, toLang);
+                        latencies.add(System.nanoTime() - now);
+                    } catch (IOException e) {
+                        latencies.errors++;
+                    }
+                }
+                return latencies;
+            }));
+
+        Result result = new Result();
+        for (Future<Latencies> future : futures)
+            result.add(future.get());
+        result.finish(System.nanoTime() - start);
+        callers.shutdown();
+        return result;
+    }
+
+    /**
+     * latencies of one caller, no sharing while running
+     */
+    private static class Latencies {
+
+        private long[] values = new long[1024];
+        private int size;
+        private long errors;
+
+        void add(long latency) {
+            if (size == values.length)
+                values = Arrays.copyOf(values, size * 2);
+            values[size++] = latency;
+        }
+    }
+
+    /**
+     * merged latencies of all callers
+     */
+    private static class Result {
+
+        private long elapsed;
+        private long[] values = new long[0];
+        private long errors;
+
+        void add(Latencies latencies) {
+            int size = values.length;
+            values = Arrays.copyOf(values, size + latencies.size);
+            System.arraycopy(latencies.values, 0, values, size, latencies.size);
+            errors += latencies.errors;
+        }
+
+        void finish(long elapsed) {
+            this.elapsed = elapsed;
+            Arrays.sort(values);
+        }
+
+        double throughput() {
+            return values.length / (elapsed / 1e9);
+        }
+
+        // nearest rank percentile in ms
+        double percentile(double percentile) {
+            if (values.length == 0)
+                return 0;
+            int rank = (int) Math.ceil(percentile * values.length);
+            return values[Math.max(0, Math.min(values.length, rank) - 1)] / 1e6;
+        }
+    }
+
+    private static int[] ints(String list) {
+        String[] parts = list.split(",");
+        int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++)
+            values[i] = Integer.parseInt(parts[i].trim());
+        return values;
+    }
+}
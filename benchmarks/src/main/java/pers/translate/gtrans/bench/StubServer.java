@@ -0,0 +1,398 @@
+package pers.translate.gtrans.bench;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import pers.translate.gtrans.api.Endpoint;
+import pers.translate.gtrans.http.HttpClient4;
+import pers.translate.gtrans.http.ParamPairList;
+import pers.translate.gtrans.http.ResponseParser;
+import pers.translate.gtrans.http.ResponseRecordings;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Local http server standing in for the translate api
+ * <p>
+ * Answers with a canned response, a recorded one (see ResponseRecordings) or one generated from
+ * the request in the shape the client parses: single result for one source, multiple result
+ * otherwise, '[tl] source' as translation. Latency follows a distribution, a share of requests
+ * fails with 503 or is throttled with 429 & Retry-After.
+ */
+public class StubServer {
+
+    private static final String API_HOST = "https://translate.googleapis.com";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final byte[] response;                  // null means recorded or generated
+    private final ResponseRecordings recordings;    // null means generated
+    private final Latency latency;
+    private final double errorRate;
+    private final double throttleRate;
+    private final int retryAfter;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+
+    /**
+     * start server on a free local port
+     * @param response canned json response of every request
+     * @throws IOException can't bind
+     */
+    public StubServer(String response) throws IOException {
+        this(custom().setResponse(response));
+    }
+
+    private StubServer(Builder builder) throws IOException {
+        // headers & body are written separately, don't let nagle delay the body
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        this.response = builder.response == null ? null : builder.response.getBytes(StandardCharsets.UTF_8);
+        this.recordings = builder.recordings;
+        this.latency = builder.latency;
+        this.errorRate = builder.errorRate;
+        this.throttleRate = builder.throttleRate;
+        this.retryAfter = builder.retryAfter;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", builder.port), builder.backlog);
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "stub-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server.setExecutor(executor);
+        this.server.createContext("/", this::handle);
+        this.server.start();
+    }
+
+    /**
+     * builder of a server generating responses, with no latency & no failures
+     * @return Builder
+     */
+    public static Builder custom() {
+        return new Builder();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.increment();
+        // drain request body so the connection can be reused
+        byte[] body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = readAll(in);
+        }
+
+        long delay = latency.nextMillis();
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        double roll = ThreadLocalRandom.current().nextDouble();
+        if (roll < throttleRate) {
+            throttled.increment();
+            exchange.getResponseHeaders().add("Retry-After", String.valueOf(retryAfter));
+            exchange.sendResponseHeaders(429, -1);
+            exchange.close();
+            return;
+        }
+        if (roll < throttleRate + errorRate) {
+            errors.increment();
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+            return;
+        }
+
+        byte[] out = this.response;
+        String contentType = "application/json; charset=UTF-8";
+        if (out == null && recordings != null) {
+            URI uri = exchange.getRequestURI();
+            String pathAndQuery = uri.getRawQuery() == null ? uri.getRawPath()
+                    : uri.getRawPath() + "?" + uri.getRawQuery();
+            ResponseRecordings.Recording recording = recordings.load(
+                    ResponseRecordings.key(exchange.getRequestMethod(), pathAndQuery, body));
+            if (recording != null) {
+                out = recording.getBody();
+                if (recording.getContentType() != null)
+                    contentType = recording.getContentType();
+            }
+        }
+        if (out == null)
+            out = generate(exchange.getRequestURI().getRawQuery(), body);
+
+        exchange.getResponseHeaders().add("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, out.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(out);
+        }
+    }
+
+    /**
+     * response of translate api for 'q' params of body
+     */
+    private static byte[] generate(String query, byte[] body) throws IOException {
+        String fromLang = "auto", toLang = "en";
+        for (String[] pair : params(query)) {
+            if (pair[0].equals("sl"))
+                fromLang = pair[1];
+            else if (pair[0].equals("tl"))
+                toLang = pair[1];
+        }
+        List<String> source = new ArrayList<>();
+        for (String[] pair : params(new String(body, StandardCharsets.UTF_8)))
+            if (pair[0].equals("q"))
+                source.add(pair[1]);
+        if (source.isEmpty())
+            source.add("");
+        String detected = "auto".equals(fromLang) ? "en" : fromLang;
+        return Inputs.response(source, detected, toLang).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String[]> params(String encoded) throws IOException {
+        List<String[]> params = new ArrayList<>();
+        if (encoded == null || encoded.isEmpty())
+            return params;
+        for (String pair : encoded.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), "UTF-8");
+            params.add(new String[]{name, value});
+        }
+        return params;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1)
+            out.write(buffer, 0, n);
+        return out.toByteArray();
+    }
+
+    /**
+     * @return base url of server
+     */
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * translate api endpoint of this server, for GoogleTranslate.setEndpointPool
+     * @return Endpoint
+     */
+    public Endpoint endpoint() {
+        return new Endpoint(getUrl() + "/translate_a/t", Endpoint.DEFAULT_CLIENT);
+    }
+
+    /**
+     * http client sending translate api requests to this server
+     * @return HttpClient4
+     */
+    public HttpClient4 newClient() {
+        final String url = getUrl();
+        return new HttpClient4() {
+            @Override
+            public <T> T doPost(String apiUrl, Map<String, String> headers, ParamPairList params,
+                                ParamPairList data, ResponseParser<T> parser) throws IOException {
+                return super.doPost(apiUrl.replace(API_HOST, url), headers, params, data, parser);
+            }
+        };
+    }
+
+    /**
+     * @return number of requests received
+     */
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    /**
+     * @return number of injected 503 responses
+     */
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /**
+     * @return number of injected 429 responses
+     */
+    public long getThrottled() {
+        return throttled.sum();
+    }
+
+    /**
+     * stop server
+     */
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * latency distribution of responses
+     */
+    public interface Latency {
+
+        /**
+         * @return latency of next response in ms
+         */
+        long nextMillis();
+
+        /**
+         * @param millis latency of every response
+         * @return Latency
+         */
+        static Latency fixed(final long millis) {
+            return () -> millis;
+        }
+
+        /**
+         * @param min min latency in ms
+         * @param max max latency in ms
+         * @return Latency uniform in [min, max]
+         */
+        static Latency uniform(final long min, final long max) {
+            return () -> ThreadLocalRandom.current().nextLong(min, max + 1);
+        }
+
+        /**
+         * @param mean mean latency in ms
+         * @return Latency with exponential distribution, a long tail of slow responses
+         */
+        static Latency exponential(final double mean) {
+            return () -> Math.round(-mean * Math.log(1 - ThreadLocalRandom.current().nextDouble()));
+        }
+
+        /**
+         * parse 'fixed:20', 'uniform:10:50' or 'exp:30'
+         * @param spec latency spec
+         * @return Latency
+         */
+        static Latency parse(String spec) {
+            String[] parts = spec.split(":");
+            switch (parts[0]) {
+                case "fixed":
+                    return fixed(Long.parseLong(parts[1]));
+                case "uniform":
+                    return uniform(Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+                case "exp":
+                    return exponential(Double.parseDouble(parts[1]));
+                default:
+                    throw new IllegalArgumentException("unknown latency: " + spec);
+            }
+        }
+    }
+
+    /**
+     * Builder of StubServer
+     */
+    public static class Builder {
+
+        private int port;
+        private int backlog = 1024;
+        private String response;
+        private ResponseRecordings recordings;
+        private Latency latency = Latency.fixed(0);
+        private double errorRate;
+        private double throttleRate;
+        private int retryAfter = 1;
+
+        Builder() {}
+
+        /**
+         * @param port local port, 0 picks a free one
+         * @return this
+         */
+        public Builder setPort(int port) {
+            this.port = port;
+            return this;
+        }
+
+        /**
+         * @param backlog max pending connections
+         * @return this
+         */
+        public Builder setBacklog(int backlog) {
+            this.backlog = backlog;
+            return this;
+        }
+
+        /**
+         * @param response canned json response of every request
+         * @return this
+         */
+        public Builder setResponse(String response) {
+            this.response = response;
+            return this;
+        }
+
+        /**
+         * @param recordings recorded responses, requests not recorded get a generated one
+         * @return this
+         */
+        public Builder setRecordings(ResponseRecordings recordings) {
+            this.recordings = recordings;
+            return this;
+        }
+
+        /**
+         * @param latency latency distribution of responses
+         * @return this
+         */
+        public Builder setLatency(Latency latency) {
+            this.latency = latency;
+            return this;
+        }
+
+        /**
+         * @param errorRate share of requests answered with 503
+         * @return this
+         */
+        public Builder setErrorRate(double errorRate) {
+            this.errorRate = errorRate;
+            return this;
+        }
+
+        /**
+         * @param throttleRate share of requests answered with 429
+         * @return this
+         */
+        public Builder setThrottleRate(double throttleRate) {
+            this.throttleRate = throttleRate;
+            return this;
+        }
+
+        /**
+         * @param retryAfter Retry-After seconds of 429 responses
+         * @return this
+         */
+        public Builder setRetryAfter(int retryAfter) {
+            this.retryAfter = retryAfter;
+            return this;
+        }
+
+        /**
+         * start server
+         * @return StubServer
+         * @throws IOException can't bind
+         */
+        public StubServer start() throws IOException {
+            return new StubServer(this);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package pers.translate.gtrans.http;
+
+import org.apache.http.HttpEntity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import pers.translate.gtrans.bench.Inputs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * x-www-form-urlencoded entity encoding & url params building
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormEntityBenchmark {
+
+    @Param({"1", "16", "128"})
+    public int items;
+
+    @Param({"64"})
+    public int size;
+
+    @Param({"ASCII", "CJK", "EMOJI"})
+    public Inputs.Script script;
+
+    private HttpClient4 httpClient4;
+    private ParamPairList data;
+
+    @Setup
+    public void setup() {
+        httpClient4 = new HttpClient4();
+        data = new ParamPairList();
+        for (String item : Inputs.texts(script, items, size))
+            data.add("q", item);
+    }
+
+    @TearDown
+    public void tearDown() {
+        httpClient4.shutdown();
+    }
+
+    @Benchmark
+    public void encodeEntity(final Blackhole blackhole) throws IOException {
+        HttpEntity entity = httpClient4.getUrlEncodedFormEntity(data);
+        // write like the connection does, into a sink
+        entity.writeTo(new OutputStream() {
+            @Override
+            public void write(int b) {
+                blackhole.consume(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                blackhole.consume(b);
+            }
+        });
+    }
+
+    @Benchmark
+    public String getUrlWithParams() {
+        return httpClient4.getUrlWithParams("https://translate.googleapis.com/translate_a/t", data);
+    }
+}
@@ -0,0 +1,333 @@
+package pers.translate.gtrans.api;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesce concurrent single source translate / detect calls into bulk requests
+ * <p>
+ * Calls sharing the same (fromLang, toLang) pair are collected into one batch, the batch is sent
+ * as one bulk request when it reaches maxItems, maxBytes or has waited maxDelayMillis.
+ * Calls after shutdown / close fail with IllegalStateException.
+ * <p>
+ * By default batches are sent through the non-blocking client, which has no rate limiter, retry
+ * or hedge policy. Set an executor with {@link #setExecutor} to send them through the blocking
+ * HttpClient4 instead, so its rate limiter, retry & hedge policy apply.
+ */
+public class BatchingTranslate implements AutoCloseable {
+
+    private static final int DEFAULT_MAX_ITEMS = 64;
+    private static final int DEFAULT_MAX_BYTES = 4096;
+    private static final long DEFAULT_MAX_DELAY_MILLIS = 10;
+
+    private final GoogleTranslate googleTranslate;
+    private final int maxItems;               // flush when batch has so many items
+    private final int maxBytes;               // flush before utf-8 size of batch exceeds it
+    private final long maxDelayMillis;        // flush when first item has waited so long
+    private final ScheduledExecutorService scheduler;
+    private volatile Executor executor;       // runs blocking sends, null means non-blocking client
+    private final Map<BatchKey, Batch> pending = new HashMap<>();
+    private boolean shutdown;                 // guarded by pending
+
+    /**
+     * Default constructor
+     * @param googleTranslate client api to send batches
+     */
+    public BatchingTranslate(GoogleTranslate googleTranslate){
+        this(googleTranslate, DEFAULT_MAX_ITEMS, DEFAULT_MAX_BYTES, DEFAULT_MAX_DELAY_MILLIS);
+    }
+
+    /**
+     * constructor
+     * @param googleTranslate client api to send batches
+     * @param maxItems max items of one batch
+     * @param maxBytes max utf-8 bytes of one batch, a single larger item is sent alone
+     * @param maxDelayMillis max time an item waits for its batch
+     */
+    public BatchingTranslate(GoogleTranslate googleTranslate, int maxItems, int maxBytes, long maxDelayMillis){
+        if (maxItems < 1 || maxBytes < 1 || maxDelayMillis < 0)
+            throw new IllegalArgumentException("maxItems and maxBytes must be positive, maxDelayMillis not negative");
+        this.googleTranslate = googleTranslate;
+        this.maxItems = maxItems;
+        this.maxBytes = maxBytes;
+        this.maxDelayMillis = maxDelayMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "gtrans-batch-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * translate api, blocks until the batch containing source is answered
+     * @param singleSource single source to translate
+     * @param fromLang origin language
+     * @param toLang target language
+     * @return translate result
+     * @throws IOException http request error
+     */
+    public String translate(String singleSource, String fromLang, String toLang) throws IOException {
+        return await(translateAsync(singleSource, fromLang, toLang));
+    }
+
+    /**
+     * non-blocking translate api
+     * @param singleSource single source to translate
+     * @param fromLang origin language
+     * @param toLang target language
+     * @return future of translate result
+     */
+    public CompletableFuture<String> translateAsync(String singleSource, String fromLang, String toLang) {
+        return enqueue(new BatchKey(false, fromLang, toLang), singleSource);
+    }
+
+    /**
+     * detect language, blocks until the batch containing source is answered
+     * @param singleSource single source to detect
+     * @return detect result
+     * @throws IOException http request error
+     */
+    public String detect(String singleSource) throws IOException {
+        return await(detectAsync(singleSource));
+    }
+
+    /**
+     * non-blocking detect language
+     * @param singleSource single source to detect
+     * @return future of detect result
+     */
+    public CompletableFuture<String> detectAsync(String singleSource) {
+        return enqueue(new BatchKey(true, "auto", "en"), singleSource);
+    }
+
+    /**
+     * send batches with the blocking client on executor, so rate limiter, retry & hedge policy of
+     * HttpClient4 apply; a batch holds an executor thread until it is answered
+     * @param executor Executor, null to send through the non-blocking client (default)
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * send all pending batches now
+     */
+    public void flush() {
+        List<Batch> batches;
+        synchronized (pending) {
+            batches = new ArrayList<>(pending.values());
+            pending.clear();
+        }
+        for (Batch batch : batches)
+            send(batch);
+    }
+
+    /**
+     * send pending batches and stop the flush timer, later calls fail
+     */
+    public void shutdown() {
+        synchronized (pending) {
+            shutdown = true;
+        }
+        flush();
+        scheduler.shutdown();
+    }
+
+    /**
+     * same as shutdown, sent batches still complete
+     */
+    @Override
+    public void close() {
+        shutdown();
+    }
+
+    /**
+     * add source to the open batch of key
+     * @param key batch key
+     * @param source source
+     * @return future of result
+     */
+    private CompletableFuture<String> enqueue(final BatchKey key, String source) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        int bytes = source.getBytes(StandardCharsets.UTF_8).length;
+        Batch full = null;
+        Batch overflow = null;
+        synchronized (pending) {
+            if (shutdown) {
+                future.completeExceptionally(new IllegalStateException("batching is shut down"));
+                return future;
+            }
+            Batch batch = pending.get(key);
+            // item does not fit, close the open batch first
+            if (batch != null && batch.bytes + bytes > maxBytes) {
+                overflow = batch;
+                pending.remove(key);
+                batch = null;
+            }
+            if (batch == null) {
+                final Batch created = new Batch(key);
+                created.timer = scheduler.schedule(() -> flush(created), maxDelayMillis, TimeUnit.MILLISECONDS);
+                pending.put(key, created);
+                batch = created;
+            }
+            batch.sources.add(source);
+            batch.futures.add(future);
+            batch.bytes += bytes;
+            if (batch.sources.size() >= maxItems || batch.bytes >= maxBytes) {
+                full = batch;
+                pending.remove(key);
+            }
+        }
+        if (overflow != null)
+            send(overflow);
+        if (full != null)
+            send(full);
+        return future;
+    }
+
+    /**
+     * flush batch if it is still open, called by timer
+     * @param batch batch
+     */
+    private void flush(Batch batch) {
+        synchronized (pending) {
+            if (pending.get(batch.key) != batch)
+                return;
+            pending.remove(batch.key);
+        }
+        send(batch);
+    }
+
+    /**
+     * send batch & split result to waiting callers
+     * @param batch closed batch
+     */
+    private void send(final Batch batch) {
+        if (batch.timer != null)
+            batch.timer.cancel(false);
+
+        CompletableFuture<List<String>> result;
+        Executor executor = this.executor;
+        try {
+            if (executor != null)
+                result = CompletableFuture.supplyAsync(() -> sendBlocking(batch), executor);
+            else if (batch.key.detect)
+                result = googleTranslate.detectAsync(batch.sources);
+            else
+                result = googleTranslate.translateAsync(batch.sources, batch.key.fromLang, batch.key.toLang);
+        } catch (RuntimeException e) {
+            result = new CompletableFuture<>();
+            result.completeExceptionally(e);
+        }
+
+        result.whenComplete((list, e) -> {
+            if (e instanceof CompletionException && e.getCause() != null)
+                e = e.getCause();
+            if (e == null && (list == null || list.size() != batch.futures.size()))
+                e = new IOException("batch result size mismatch, expected " + batch.futures.size());
+            for (int i = 0; i < batch.futures.size(); i++) {
+                if (e != null)
+                    batch.futures.get(i).completeExceptionally(e);
+                else
+                    batch.futures.get(i).complete(list.get(i));
+            }
+        });
+    }
+
+    /**
+     * send batch with the blocking client
+     * @param batch closed batch
+     * @return List result
+     * @throws CompletionException http request error
+     */
+    private List<String> sendBlocking(Batch batch) {
+        try {
+            if (batch.key.detect)
+                return googleTranslate.detect(batch.sources);
+            return googleTranslate.translate(batch.sources, batch.key.fromLang, batch.key.toLang);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * wait result of future
+     * @param future future
+     * @return result
+     * @throws IOException http request error
+     */
+    private static String await(CompletableFuture<String> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting batch", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * batch identity, requests with same key can share one http request
+     */
+    private static class BatchKey {
+
+        private final boolean detect;
+        private final String fromLang;
+        private final String toLang;
+
+        BatchKey(boolean detect, String fromLang, String toLang) {
+            this.detect = detect;
+            this.fromLang = fromLang;
+            this.toLang = toLang;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof BatchKey))
+                return false;
+            BatchKey other = (BatchKey) o;
+            return detect == other.detect && fromLang.equals(other.fromLang) && toLang.equals(other.toLang);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * Boolean.hashCode(detect) + fromLang.hashCode()) + toLang.hashCode();
+        }
+    }
+
+    /**
+     * open batch, guarded by pending
+     */
+    private static class Batch {
+
+        private final BatchKey key;
+        private final List<String> sources = new ArrayList<>();
+        private final List<CompletableFuture<String>> futures = new ArrayList<>();
+        private int bytes;
+        private ScheduledFuture<?> timer;
+
+        Batch(BatchKey key) {
+            this.key = key;
+        }
+    }
+}
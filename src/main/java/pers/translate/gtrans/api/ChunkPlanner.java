@@ -0,0 +1,229 @@
+package pers.translate.gtrans.api;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Split oversized sources & pack sources into request sized batches
+ * <p>
+ * A source larger than maxBytes (utf-8) is cut at a sentence end, else at a whitespace, else at a
+ * code point. Pieces are packed in order into batches of at most maxItems pieces and maxBytes bytes.
+ */
+class ChunkPlanner {
+
+    private final int maxBytes;
+    private final int maxItems;
+
+    /**
+     * constructor
+     * @param maxBytes max utf-8 bytes of one batch, at least 4 so any code point fits
+     * @param maxItems max items of one batch
+     */
+    ChunkPlanner(int maxBytes, int maxItems) {
+        if (maxBytes < 4 || maxItems < 1)
+            throw new IllegalArgumentException("maxBytes must be at least 4, maxItems positive");
+        this.maxBytes = maxBytes;
+        this.maxItems = maxItems;
+    }
+
+    /**
+     * plan batches for source
+     * @param source List source
+     * @return Plan
+     */
+    Plan plan(List<String> source) {
+        List<String> pieces = new ArrayList<>(source.size());
+        List<Integer> pieceBytes = new ArrayList<>(source.size());
+        List<Integer> owners = new ArrayList<>(source.size());
+        int owner = 0;
+        for (String item : source) {
+            split(item, pieces, pieceBytes);
+            while (owners.size() < pieces.size())
+                owners.add(owner);
+            owner++;
+        }
+
+        List<List<String>> batches = new ArrayList<>();
+        List<String> batch = new ArrayList<>();
+        int batchBytes = 0;
+        for (int i = 0; i < pieces.size(); i++) {
+            int bytes = pieceBytes.get(i);
+            if (!batch.isEmpty() && (batch.size() >= maxItems || batchBytes + bytes > maxBytes)) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                batchBytes = 0;
+            }
+            batch.add(pieces.get(i));
+            batchBytes += bytes;
+        }
+        if (!batch.isEmpty())
+            batches.add(batch);
+
+        return new Plan(source.size(), pieces, owners, batches);
+    }
+
+    /**
+     * split source into pieces of at most maxBytes
+     * @param source source
+     * @param pieces out pieces
+     * @param pieceBytes out utf-8 size of every piece
+     */
+    private void split(String source, List<String> pieces, List<Integer> pieceBytes) {
+        int start = 0;
+        int length = source.length();
+        do {
+            int bytes = 0;
+            int i = start;
+            int sentenceEnd = -1, sentenceBytes = 0;
+            int spaceEnd = -1, spaceBytes = 0;
+            int prev = 0;
+            while (i < length) {
+                int cp = source.codePointAt(i);
+                int cpBytes = utf8Length(cp);
+                if (bytes + cpBytes > maxBytes)
+                    break;
+                bytes += cpBytes;
+                i += Character.charCount(cp);
+                if (isFullWidthSentenceEnd(cp) || (Character.isWhitespace(cp) && isSentenceEnd(prev))) {
+                    sentenceEnd = i;
+                    sentenceBytes = bytes;
+                }
+                if (Character.isWhitespace(cp)) {
+                    spaceEnd = i;
+                    spaceBytes = bytes;
+                }
+                prev = cp;
+            }
+
+            if (i >= length) {
+                pieces.add(start == 0 ? source : source.substring(start));
+                pieceBytes.add(bytes);
+                return;
+            }
+            // prefer a sentence end unless it leaves the piece less than half full
+            int cut = i, cutBytes = bytes;
+            if (sentenceEnd > start && sentenceBytes * 2 >= maxBytes) {
+                cut = sentenceEnd;
+                cutBytes = sentenceBytes;
+            } else if (spaceEnd > start) {
+                cut = spaceEnd;
+                cutBytes = spaceBytes;
+            }
+            pieces.add(source.substring(start, cut));
+            pieceBytes.add(cutBytes);
+            start = cut;
+        } while (start < length);
+    }
+
+    private static boolean isSentenceEnd(int cp) {
+        return cp == '.' || cp == '!' || cp == '?' || cp == ';' || cp == '…';
+    }
+
+    private static boolean isFullWidthSentenceEnd(int cp) {
+        return cp == '。' || cp == '！' || cp == '？' || cp == '；';
+    }
+
+    private static int utf8Length(int cp) {
+        if (cp < 0x80)
+            return 1;
+        if (cp < 0x800)
+            return 2;
+        if (cp < 0x10000)
+            return 3;
+        return 4;
+    }
+
+    /**
+     * batches of a source list & how to map batch results back to source
+     */
+    static class Plan {
+
+        private final int sourceSize;
+        private final List<String> pieces;
+        private final List<Integer> owners;     // source index of every piece
+        private final List<List<String>> batches;
+
+        Plan(int sourceSize, List<String> pieces, List<Integer> owners, List<List<String>> batches) {
+            this.sourceSize = sourceSize;
+            this.pieces = pieces;
+            this.owners = owners;
+            this.batches = batches;
+        }
+
+        /**
+         * @return true if source fits in one request unchanged
+         */
+        boolean isSingleBatch() {
+            return batches.size() == 1 && pieces.size() == sourceSize;
+        }
+
+        List<List<String>> getBatches() {
+            return Collections.unmodifiableList(batches);
+        }
+
+        /**
+         * join translated pieces back to one translation per source
+         * @param batchResults result of every batch, in batch order
+         * @return List result, same order as source
+         * @throws IOException a batch result misses or has a wrong size
+         */
+        List<String> joinTranslations(List<List<String>> batchResults) throws IOException {
+            List<String> flat = flatten(batchResults);
+            List<String> results = new ArrayList<>(sourceSize);
+            StringBuilder joined = new StringBuilder();
+            int current = -1;
+            for (int i = 0; i < flat.size(); i++) {
+                int owner = owners.get(i);
+                if (owner != current) {
+                    if (current >= 0)
+                        results.add(joined.toString());
+                    joined.setLength(0);
+                    current = owner;
+                } else if (endsWithWhitespace(pieces.get(i - 1)) && !endsWithWhitespace(joined)) {
+                    // translator trims the space which separated the pieces
+                    joined.append(' ');
+                }
+                joined.append(flat.get(i));
+            }
+            if (current >= 0)
+                results.add(joined.toString());
+            return results;
+        }
+
+        /**
+         * pick result of first piece of every source, for results like detected language
+         * @param batchResults result of every batch, in batch order
+         * @return List result, same order as source
+         * @throws IOException a batch result misses or has a wrong size
+         */
+        List<String> firstOfEach(List<List<String>> batchResults) throws IOException {
+            List<String> flat = flatten(batchResults);
+            List<String> results = new ArrayList<>(sourceSize);
+            int current = -1;
+            for (int i = 0; i < flat.size(); i++) {
+                if (owners.get(i) != current) {
+                    results.add(flat.get(i));
+                    current = owners.get(i);
+                }
+            }
+            return results;
+        }
+
+        private List<String> flatten(List<List<String>> batchResults) throws IOException {
+            List<String> flat = new ArrayList<>(pieces.size());
+            for (int i = 0; i < batches.size(); i++) {
+                List<String> result = batchResults.get(i);
+                if (result == null || result.size() != batches.get(i).size())
+                    throw new IOException("chunk result size mismatch, expected " + batches.get(i).size());
+                flat.addAll(result);
+            }
+            return flat;
+        }
+
+        private static boolean endsWithWhitespace(CharSequence s) {
+            return s.length() > 0 && Character.isWhitespace(s.charAt(s.length() - 1));
+        }
+    }
+}
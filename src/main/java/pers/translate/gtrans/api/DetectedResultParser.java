@@ -0,0 +1,74 @@
+package pers.translate.gtrans.api;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.MalformedJsonException;
+import pers.translate.gtrans.http.HttpStatusException;
+import pers.translate.gtrans.http.ResponseParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming parser reading translation & detected language of every source from one result
+ * <p>
+ * Same json layout as {@link JsonResultParser}, which keeps only one of the two.
+ */
+class DetectedResultParser implements ResponseParser<List<DetectedTranslation>> {
+
+    private final String targetLanguage;
+    private final int expectedSize;     // number of sources, 1 means single result
+
+    /**
+     * constructor
+     * @param targetLanguage target language of request
+     * @param expectedSize number of sources, 1 means single result
+     */
+    DetectedResultParser(String targetLanguage, int expectedSize) {
+        this.targetLanguage = targetLanguage;
+        this.expectedSize = expectedSize;
+    }
+
+    @Override
+    public List<DetectedTranslation> parse(InputStream content) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(content, StandardCharsets.UTF_8));
+        try {
+            reader.beginArray();
+            List<DetectedTranslation> results = new ArrayList<>(expectedSize);
+            if (expectedSize == 1) {
+                String translation = reader.nextString();
+                results.add(new DetectedTranslation(reader.nextString(), targetLanguage, translation));
+                return results;
+            }
+
+            reader.beginArray();
+            while (reader.hasNext()) {
+                reader.beginArray();
+                reader.beginArray();
+                reader.beginArray();
+                String translation = reader.nextString();
+                JsonResultParser.endArray(reader);
+                JsonResultParser.endArray(reader);
+                reader.skipValue();
+                results.add(new DetectedTranslation(reader.nextString(), targetLanguage, translation));
+                JsonResultParser.endArray(reader);
+            }
+            // a short or truncated answer mustn't be matched to the wrong sources
+            if (results.size() != expectedSize)
+                throw new UnexpectedResultException("unexpected result size " + results.size()
+                        + ", expected " + expectedSize);
+            return results;
+        } catch (IllegalStateException | MalformedJsonException e) {
+            // JsonReader reports a token of unexpected type or malformed json this way
+            throw new UnexpectedResultException("unexpected json result: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public List<DetectedTranslation> onStatus(int statusCode) throws IOException {
+        throw new HttpStatusException(statusCode);
+    }
+}
@@ -0,0 +1,84 @@
+package pers.translate.gtrans.api;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Detected language & translation of one source, both from the same 'auto' request
+ */
+public final class DetectedTranslation {
+
+    private final String language;
+    private final String targetLanguage;
+    private final String translation;
+
+    /**
+     * constructor
+     * @param language detected language of source
+     * @param targetLanguage language of translation
+     * @param translation translation of source
+     */
+    public DetectedTranslation(String language, String targetLanguage, String translation) {
+        this.language = language;
+        this.targetLanguage = targetLanguage;
+        this.translation = translation;
+    }
+
+    /**
+     * group indexes of results by detected language
+     * @param detected results of detectAndTranslate
+     * @return indexes of every detected language, languages in order of first appearance
+     */
+    public static Map<String, List<Integer>> groupByLanguage(List<DetectedTranslation> detected) {
+        Map<String, List<Integer>> groups = new LinkedHashMap<>();
+        int i = 0;
+        for (DetectedTranslation item : detected)
+            groups.computeIfAbsent(item.language, k -> new ArrayList<>()).add(i++);
+        return groups;
+    }
+
+    /**
+     * @return detected language of source
+     */
+    public String getLanguage() {
+        return language;
+    }
+
+    /**
+     * @return language of translation
+     */
+    public String getTargetLanguage() {
+        return targetLanguage;
+    }
+
+    /**
+     * @return translation of source
+     */
+    public String getTranslation() {
+        return translation;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof DetectedTranslation))
+            return false;
+        DetectedTranslation other = (DetectedTranslation) o;
+        return Objects.equals(language, other.language) && Objects.equals(targetLanguage, other.targetLanguage)
+                && Objects.equals(translation, other.translation);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(language, targetLanguage, translation);
+    }
+
+    @Override
+    public String toString() {
+        return language + "->" + targetLanguage + ": " + translation;
+    }
+}
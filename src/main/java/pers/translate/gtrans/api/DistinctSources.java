@@ -0,0 +1,67 @@
+package pers.translate.gtrans.api;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * Distinct items of a source list & where every original item went
+ * <p>
+ * Items with equal normalized form are sent once, as their first occurrence, results of the
+ * distinct items are fanned back out to every original position.
+ */
+final class DistinctSources {
+
+    private final List<String> sources;     // first item of every distinct normalized form
+    private final int[] positions;          // index in sources of every original item
+
+    private DistinctSources(List<String> sources, int[] positions) {
+        this.sources = sources;
+        this.positions = positions;
+    }
+
+    /**
+     * collapse duplicates of source
+     * @param source List source
+     * @param normalizer normalized form of an item, items of equal form are duplicates
+     * @return DistinctSources, null if source has no duplicate
+     */
+    static DistinctSources of(List<String> source, UnaryOperator<String> normalizer) {
+        int size = source.size();
+        if (size < 2)
+            return null;
+        HashMap<String, Integer> indexes = new HashMap<>(size * 4 / 3 + 1);
+        List<String> sources = new ArrayList<>();
+        int[] positions = new int[size];
+        int i = 0;
+        for (String item : source) {
+            Integer index = indexes.putIfAbsent(normalizer.apply(item), sources.size());
+            if (index == null) {
+                index = sources.size();
+                sources.add(item);
+            }
+            positions[i++] = index;
+        }
+        return sources.size() == size ? null : new DistinctSources(sources, positions);
+    }
+
+    /**
+     * @return distinct items to send
+     */
+    List<String> getSources() {
+        return sources;
+    }
+
+    /**
+     * fan results of distinct items out to every original position
+     * @param results result of every distinct item
+     * @return result of every original item
+     */
+    <T> List<T> expand(List<T> results) {
+        List<T> expanded = new ArrayList<>(positions.length);
+        for (int position : positions)
+            expanded.add(results.get(position));
+        return expanded;
+    }
+}
@@ -0,0 +1,185 @@
+package pers.translate.gtrans.api;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One host & client variant serving the translate api
+ * <p>
+ * Every endpoint of a pool must answer the same api ('translate_a/t' json). An endpoint also keeps
+ * the load & health state its EndpointPool selects by: running requests, moving average latency,
+ * consecutive failures and the time it is ejected until.
+ */
+public final class Endpoint {
+
+    /** the public translate api */
+    public static final String DEFAULT_URL = "https://translate.googleapis.com/translate_a/t";
+    public static final String DEFAULT_CLIENT = "webapp";
+
+    private static final String QUERY = "&dt=bd&dt=ex&dt=ld&dt=md&dt=qca&dt=rw&dt=rm&dt=ss&dt=t&dt=at" +
+            "&ie=UTF-8&oe=UTF-8&otf=2&ssel=0&tsel=0&kc=1";
+    private static final int MAX_URL_PREFIXES = 256;    // per origin language & per target language
+    private static final double LATENCY_DECAY = 0.2;    // weight of a new sample in moving average
+
+    private final String url;
+    private final String client;
+    private final String baseUrl;
+    // api url up to tk, by origin & target language
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, String>> urlPrefixes = new ConcurrentHashMap<>();
+
+    // load & health, updated by EndpointPool
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicLong latencyBits;           // moving average latency in nanos, as double bits
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicInteger ejections = new AtomicInteger();
+    private volatile long ejectedUntil;             // System.nanoTime, 0 if never ejected
+
+    /**
+     * endpoint of the public translate api
+     */
+    public Endpoint() {
+        this(DEFAULT_URL, DEFAULT_CLIENT);
+    }
+
+    /**
+     * constructor
+     * @param url api url without query, like "https://translate.googleapis.com/translate_a/t"
+     * @param client value of client param
+     */
+    public Endpoint(String url, String client) {
+        if (url.indexOf('?') >= 0)
+            throw new IllegalArgumentException("url must not have a query: " + url);
+        this.url = url;
+        this.client = client;
+        this.baseUrl = url + "?client=" + client + QUERY;
+        this.latencyBits = new AtomicLong(Double.doubleToLongBits(EndpointPool.INITIAL_LATENCY_NANOS));
+    }
+
+    /**
+     * build api url
+     * @param fromLang origin language
+     * @param toLang target language
+     * @param tk tk of source
+     * @return api url
+     */
+    String apiUrl(String fromLang, String toLang, String tk) {
+        String prefix = urlPrefix(fromLang, toLang);
+        return new StringBuilder(prefix.length() + tk.length()).append(prefix).append(tk).toString();
+    }
+
+    /**
+     * get api url up to tk, build it once per language pair
+     * @param fromLang origin language
+     * @param toLang target language
+     * @return api url without tk value
+     */
+    private String urlPrefix(String fromLang, String toLang) {
+        ConcurrentHashMap<String, String> byTarget = fromLang == null ? null : this.urlPrefixes.get(fromLang);
+        String prefix = byTarget == null || toLang == null ? null : byTarget.get(toLang);
+        if (prefix != null)
+            return prefix;
+
+        prefix = baseUrl + "&sl=" + fromLang + "&tl=" + toLang + "&hl=" + toLang + "&tk=";
+        if (fromLang == null || toLang == null)
+            return prefix;
+        if (byTarget == null) {
+            // language codes come from callers, keep the cache bounded
+            if (this.urlPrefixes.size() >= MAX_URL_PREFIXES)
+                return prefix;
+            byTarget = this.urlPrefixes.computeIfAbsent(fromLang, k -> new ConcurrentHashMap<>());
+        }
+        if (byTarget.size() < MAX_URL_PREFIXES)
+            byTarget.putIfAbsent(toLang, prefix);
+        return prefix;
+    }
+
+    /**
+     * @return api url without query
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * @return value of client param
+     */
+    public String getClient() {
+        return client;
+    }
+
+    /**
+     * @return number of running requests
+     */
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    /**
+     * @return moving average latency of successful requests in ms
+     */
+    public double getLatencyMillis() {
+        return latencyNanos() / 1e6;
+    }
+
+    /**
+     * @return true if ejected for failures now
+     */
+    public boolean isEjected() {
+        return isEjected(System.nanoTime());
+    }
+
+    // state updates, see EndpointPool
+
+    void onStart() {
+        outstanding.incrementAndGet();
+    }
+
+    void onFinish() {
+        outstanding.decrementAndGet();
+    }
+
+    void onSuccess(long latencyNanos) {
+        outstanding.decrementAndGet();
+        consecutiveFailures.set(0);
+        ejections.set(0);
+        long bits, next;
+        do {
+            bits = latencyBits.get();
+            double average = Double.longBitsToDouble(bits);
+            next = Double.doubleToLongBits(average + (latencyNanos - average) * LATENCY_DECAY);
+        } while (!latencyBits.compareAndSet(bits, next));
+    }
+
+    /**
+     * @return true if this failure ejected the endpoint
+     */
+    boolean onFailure(int maxFailures, long ejectionNanos, int maxEjectionFactor) {
+        outstanding.decrementAndGet();
+        if (consecutiveFailures.incrementAndGet() < maxFailures)
+            return false;
+        // after the ejection one more failure ejects again, for longer
+        consecutiveFailures.set(maxFailures - 1);
+        int factor = Math.min(1 << Math.min(ejections.getAndIncrement(), 30), maxEjectionFactor);
+        ejectedUntil = System.nanoTime() + ejectionNanos * factor;
+        return true;
+    }
+
+    double latencyNanos() {
+        return Double.longBitsToDouble(latencyBits.get());
+    }
+
+    boolean isEjected(long now) {
+        long until = ejectedUntil;
+        return until != 0 && now - until < 0;
+    }
+
+    long getEjectedUntil() {
+        return ejectedUntil;
+    }
+
+    @Override
+    public String toString() {
+        return url + "?client=" + client;
+    }
+}
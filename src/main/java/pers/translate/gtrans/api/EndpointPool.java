@@ -0,0 +1,184 @@
+package pers.translate.gtrans.api;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Equivalent translate api endpoints requests are spread over
+ * <p>
+ * Selection is power of two choices: two random healthy endpoints are compared & the one with
+ * less expected wait wins, that is moving average latency times (running requests + 1). So a slow
+ * or busy endpoint gets fewer requests without any global lock. An endpoint failing several times
+ * in a row is ejected for a while, longer on every ejection in a row. When every endpoint is
+ * ejected the one ejected first is still used rather than failing without trying.
+ */
+public class EndpointPool {
+
+    static final double INITIAL_LATENCY_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final int DEFAULT_MAX_FAILURES = 5;
+    private static final long DEFAULT_EJECTION_TIME = 10000;
+    private static final int MAX_EJECTION_FACTOR = 8;
+
+    private final Endpoint[] endpoints;
+    private final int maxFailures;
+    private final long ejectionNanos;
+
+    /**
+     * constructor with default health settings
+     * @param endpoints endpoints, at least one
+     */
+    public EndpointPool(List<Endpoint> endpoints) {
+        this(endpoints, DEFAULT_MAX_FAILURES, DEFAULT_EJECTION_TIME);
+    }
+
+    /**
+     * constructor
+     * @param endpoints endpoints, at least one
+     * @param maxFailures failures in a row that eject an endpoint
+     * @param ejectionTime time in ms an endpoint is ejected for the first time, doubles up to 8 times
+     */
+    public EndpointPool(List<Endpoint> endpoints, int maxFailures, long ejectionTime) {
+        if (endpoints.isEmpty())
+            throw new IllegalArgumentException("no endpoint");
+        if (maxFailures < 1)
+            throw new IllegalArgumentException("maxFailures must be positive");
+        this.endpoints = endpoints.toArray(new Endpoint[0]);
+        this.maxFailures = maxFailures;
+        this.ejectionNanos = TimeUnit.MILLISECONDS.toNanos(ejectionTime);
+    }
+
+    /**
+     * pool of one endpoint
+     * @param endpoint endpoint
+     * @return EndpointPool
+     */
+    public static EndpointPool of(Endpoint endpoint) {
+        return new EndpointPool(Collections.singletonList(endpoint));
+    }
+
+    /**
+     * select endpoint of next request
+     * @return Endpoint
+     */
+    public Endpoint select() {
+        if (endpoints.length == 1)
+            return endpoints[0];
+        Endpoint selected = select(null, System.nanoTime());
+        return selected != null ? selected : firstToReturn();
+    }
+
+    /**
+     * select another healthy endpoint to retry a failed request on
+     * @param failed endpoint the request failed on
+     * @return Endpoint, null if there is none
+     */
+    public Endpoint selectOther(Endpoint failed) {
+        if (endpoints.length == 1)
+            return null;
+        return select(failed, System.nanoTime());
+    }
+
+    /**
+     * power of two choices over healthy endpoints except excluded
+     * @return Endpoint, null if none is healthy
+     */
+    private Endpoint select(Endpoint excluded, long now) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int n = endpoints.length;
+        int i = random.nextInt(n);
+        int j = random.nextInt(n - 1);
+        if (j >= i)
+            j++;
+        Endpoint a = endpoints[i], b = endpoints[j];
+        boolean aUsable = a != excluded && !a.isEjected(now);
+        boolean bUsable = b != excluded && !b.isEjected(now);
+        if (aUsable && bUsable)
+            return score(a) <= score(b) ? a : b;
+
+        // some are ejected, choose among the usable ones only
+        List<Endpoint> usable = new ArrayList<>(n);
+        for (Endpoint endpoint : endpoints)
+            if (endpoint != excluded && !endpoint.isEjected(now))
+                usable.add(endpoint);
+        if (usable.size() <= 1)
+            return usable.isEmpty() ? null : usable.get(0);
+        i = random.nextInt(usable.size());
+        j = random.nextInt(usable.size() - 1);
+        if (j >= i)
+            j++;
+        a = usable.get(i);
+        b = usable.get(j);
+        return score(a) <= score(b) ? a : b;
+    }
+
+    /**
+     * @return endpoint whose ejection ends first
+     */
+    private Endpoint firstToReturn() {
+        Endpoint first = endpoints[0];
+        for (Endpoint endpoint : endpoints)
+            if (endpoint.getEjectedUntil() - first.getEjectedUntil() < 0)
+                first = endpoint;
+        return first;
+    }
+
+    // expected wait of a new request
+    private static double score(Endpoint endpoint) {
+        return endpoint.latencyNanos() * (endpoint.getOutstanding() + 1);
+    }
+
+    /**
+     * a request to endpoint starts
+     * @param endpoint Endpoint
+     */
+    public void onStart(Endpoint endpoint) {
+        endpoint.onStart();
+    }
+
+    /**
+     * a request to endpoint succeeded
+     * @param endpoint Endpoint
+     * @param latencyNanos request latency
+     */
+    public void onSuccess(Endpoint endpoint, long latencyNanos) {
+        endpoint.onSuccess(latencyNanos);
+    }
+
+    /**
+     * a request to endpoint ended without telling its health, e.g. a 4xx or unparsable answer
+     * @param endpoint Endpoint
+     */
+    public void onFinish(Endpoint endpoint) {
+        endpoint.onFinish();
+    }
+
+    /**
+     * a request to endpoint failed, a connect / io failure or a 5xx answer
+     * @param endpoint Endpoint
+     * @return true if the endpoint got ejected
+     */
+    public boolean onFailure(Endpoint endpoint) {
+        return endpoint.onFailure(maxFailures, ejectionNanos, MAX_EJECTION_FACTOR);
+    }
+
+    /**
+     * @return all endpoints
+     */
+    public List<Endpoint> getEndpoints() {
+        return Collections.unmodifiableList(Arrays.asList(endpoints));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder state = new StringBuilder();
+        for (Endpoint endpoint : endpoints)
+            state.append(String.format("%s: outstanding=%d latency=%.1fms%s%n", endpoint, endpoint.getOutstanding(),
+                    endpoint.getLatencyMillis(), endpoint.isEjected() ? " ejected" : ""));
+        return state.toString();
+    }
+}
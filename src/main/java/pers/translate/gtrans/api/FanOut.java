@@ -0,0 +1,252 @@
+package pers.translate.gtrans.api;
+
+import pers.translate.gtrans.cache.TranslationCache;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * Translation of sources into several target languages, for translateToMany & translateDetected
+ * <p>
+ * tk & post data don't depend on the target language, so they are built once for languages
+ * sending the same sources. Chunks of every language share one limit of parallel requests.
+ */
+final class FanOut {
+
+    private final GoogleTranslate translate;
+    private final TranslationCache cache;       // null means disabled
+    private final ChunkPlanner chunkPlanner;
+
+    /**
+     * constructor
+     * @param translate sends the requests
+     * @param cache translate result cache, null if disabled
+     * @param chunkPlanner splits & packs requests of every language
+     */
+    FanOut(GoogleTranslate translate, TranslationCache cache, ChunkPlanner chunkPlanner) {
+        this.translate = translate;
+        this.cache = cache;
+        this.chunkPlanner = chunkPlanner;
+    }
+
+    /**
+     * translate source into every target language
+     * @param source source to translate
+     * @param fromLang origin language
+     * @param toLangs target languages
+     * @param parallelism max requests sent at once
+     * @return result of every target language, in iteration order of toLangs
+     * @throws IOException http request error
+     */
+    Map<String, List<String>> translateToMany(List<String> source, String fromLang, Set<String> toLangs,
+                                              int parallelism) throws IOException {
+        DistinctSources distinct = translate.distinct(source);
+        List<Target> targets = plan(distinct == null ? source : distinct.getSources(), fromLang, toLangs);
+        run(targets, parallelism);
+        Map<String, List<String>> results = new LinkedHashMap<>(toLangs.size() * 4 / 3 + 1);
+        for (Target target : targets) {
+            List<String> translations = result(target);
+            results.put(target.toLang, distinct == null ? translations : distinct.expand(translations));
+        }
+        return results;
+    }
+
+    /**
+     * translate results of detectAndTranslate into more languages, sources grouped by detected language
+     * @param source source passed to detectAndTranslate
+     * @param detected results of detectAndTranslate, same size as source
+     * @param toLangs target languages
+     * @param parallelism max requests sent at once
+     * @return result of every target language, in iteration order of toLangs
+     * @throws IOException http request error
+     */
+    Map<String, List<String>> translateDetected(List<String> source, List<DetectedTranslation> detected,
+                                                Set<String> toLangs, int parallelism) throws IOException {
+        List<String> sources = source instanceof RandomAccess ? source : new ArrayList<>(source);
+        Map<String, String[]> byLang = new LinkedHashMap<>(toLangs.size() * 4 / 3 + 1);
+        for (String toLang : toLangs)
+            byLang.put(toLang, new String[sources.size()]);
+
+        List<Target> targets = new ArrayList<>();
+        List<List<Integer>> targetIndexes = new ArrayList<>();
+        List<DistinctSources> targetDistinct = new ArrayList<>();
+        for (Map.Entry<String, List<Integer>> group : DetectedTranslation.groupByLanguage(detected).entrySet()) {
+            String fromLang = group.getKey();
+            List<Integer> indexes = group.getValue();
+            Set<String> missing = new LinkedHashSet<>();
+            for (String toLang : toLangs) {
+                String[] results = byLang.get(toLang);
+                for (int i : indexes) {
+                    DetectedTranslation item = detected.get(i);
+                    if (toLang.equals(item.getTargetLanguage()))
+                        results[i] = item.getTranslation();
+                    else if (toLang.equals(fromLang))
+                        results[i] = sources.get(i);
+                    else
+                        missing.add(toLang);
+                }
+            }
+            if (missing.isEmpty())
+                continue;
+            List<String> groupSources = GoogleTranslate.pick(sources, indexes);
+            DistinctSources distinct = translate.distinct(groupSources);
+            for (Target target : plan(distinct == null ? groupSources : distinct.getSources(), fromLang, missing)) {
+                targets.add(target);
+                targetIndexes.add(indexes);
+                targetDistinct.add(distinct);
+            }
+        }
+        run(targets, parallelism);
+
+        for (int t = 0; t < targets.size(); t++) {
+            Target target = targets.get(t);
+            String[] results = byLang.get(target.toLang);
+            List<String> translations = result(target);
+            if (targetDistinct.get(t) != null)
+                translations = targetDistinct.get(t).expand(translations);
+            int k = 0;
+            for (String translation : translations)
+                results[targetIndexes.get(t).get(k++)] = translation;
+        }
+        Map<String, List<String>> results = new LinkedHashMap<>(byLang.size() * 4 / 3 + 1);
+        for (Map.Entry<String, String[]> entry : byLang.entrySet())
+            results.put(entry.getKey(), GoogleTranslate.toResultList(entry.getValue()));
+        return results;
+    }
+
+    /**
+     * look up cache & plan requests of source translated into every target language
+     * @param source source to translate
+     * @param fromLang origin language
+     * @param toLangs target languages
+     * @return one target per language, in iteration order of toLangs
+     */
+    private List<Target> plan(List<String> source, String fromLang, Collection<String> toLangs) {
+        List<Target> targets = new ArrayList<>(toLangs.size());
+        // languages missing the same sources in cache share their requests
+        Map<List<Integer>, Requests> shared = new HashMap<>();
+        for (String toLang : toLangs) {
+            Target target = new Target(fromLang, toLang, source.size());
+            if (cache != null) {
+                target.missIndexes = GoogleTranslate.lookupCache(cache, source, fromLang, toLang, target.results);
+                if (target.missIndexes.isEmpty()) {
+                    targets.add(target);
+                    continue;
+                }
+            }
+            Requests requests = shared.get(target.missIndexes);
+            if (requests == null) {
+                List<String> misses = target.missIndexes == null ? source
+                        : GoogleTranslate.pick(source, target.missIndexes);
+                requests = new Requests(misses, chunkPlanner.plan(misses));
+                shared.put(target.missIndexes, requests);
+            }
+            target.requests = requests;
+            target.batchResults = new ArrayList<>(Collections.<List<String>>nCopies(requests.batchCount(), null));
+            targets.add(target);
+        }
+        return targets;
+    }
+
+    /**
+     * send requests of every target, requests of all targets share one limit of parallel requests
+     * @param targets planned targets
+     * @param parallelism max requests sent at once
+     * @throws IOException http request error
+     */
+    private void run(List<Target> targets, int parallelism) throws IOException {
+        // one call per language & batch
+        final List<Target> calls = new ArrayList<>();
+        final List<Integer> callBatches = new ArrayList<>();
+        for (Target target : targets)
+            for (int b = 0; target.requests != null && b < target.requests.batchCount(); b++) {
+                calls.add(target);
+                callBatches.add(b);
+            }
+        translate.runParallel(calls.size(), parallelism, i -> {
+            Target target = calls.get(i);
+            int batch = callBatches.get(i);
+            List<String> translations = target.requests.send(batch, target.fromLang, target.toLang);
+            target.batchResults.set(batch, translations);
+            return null;
+        });
+    }
+
+    /**
+     * join results of a sent target & cache them
+     * @param target sent target
+     * @return List result
+     * @throws IOException a batch result misses or has a wrong size
+     */
+    private List<String> result(Target target) throws IOException {
+        if (target.requests == null)
+            return GoogleTranslate.toResultList(target.results);
+        ChunkPlanner.Plan plan = target.requests.plan;
+        List<String> translations = plan.isSingleBatch() ? target.batchResults.get(0)
+                : plan.joinTranslations(target.batchResults);
+        if (cache != null && target.missIndexes != null)
+            translations = GoogleTranslate.mergeCacheMisses(cache, target.requests.source, target.missIndexes,
+                    translations, target.fromLang, target.toLang, target.results);
+        return translations;
+    }
+
+    /**
+     * one target language
+     */
+    private static class Target {
+
+        private final String fromLang;
+        private final String toLang;
+        private final String[] results;             // cached results, misses are null
+        private List<Integer> missIndexes;          // null if not cached
+        private Requests requests;                  // null if all cached
+        private List<List<String>> batchResults;
+
+        Target(String fromLang, String toLang, int size) {
+            this.fromLang = fromLang;
+            this.toLang = toLang;
+            this.results = new String[size];
+        }
+    }
+
+    /**
+     * requests of sources translated into several languages, prepared on first send
+     */
+    private class Requests {
+
+        private final List<String> source;
+        private final ChunkPlanner.Plan plan;
+        private final GoogleTranslate.PreparedRequest[] prepared;
+
+        Requests(List<String> source, ChunkPlanner.Plan plan) {
+            this.source = source;
+            this.plan = plan;
+            this.prepared = new GoogleTranslate.PreparedRequest[batchCount()];
+        }
+
+        int batchCount() {
+            return this.plan.getBatches().size();
+        }
+
+        List<String> send(int batch, String fromLang, String toLang) throws IOException {
+            return translate.translatePrepared(prepare(batch), fromLang, toLang);
+        }
+
+        private GoogleTranslate.PreparedRequest prepare(int batch) {
+            synchronized (this.prepared) {
+                if (this.prepared[batch] == null)
+                    this.prepared[batch] = translate.prepareRequest(this.plan.getBatches().get(batch));
+                return this.prepared[batch];
+            }
+        }
+    }
+}
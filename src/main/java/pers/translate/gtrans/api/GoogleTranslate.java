@@ -1,50 +1,129 @@
 package pers.translate.gtrans.api;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonParser;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import pers.translate.gtrans.cache.TranslationCache;
+import pers.translate.gtrans.concurrent.ExecutionMode;
+import pers.translate.gtrans.concurrent.InFlightRequests;
+import pers.translate.gtrans.concurrent.SingleFlight;
+import pers.translate.gtrans.http.HttpAsyncClient4;
 import pers.translate.gtrans.http.HttpClient4;
+import pers.translate.gtrans.http.HttpStatusException;
 import pers.translate.gtrans.http.ParamPairList;
+import pers.translate.gtrans.http.ResponseParser;
+import pers.translate.gtrans.http.RetryPolicy;
+import pers.translate.gtrans.metrics.Phase;
+import pers.translate.gtrans.metrics.TranslateMetrics;
 
 import java.io.IOException;
-import java.math.BigInteger;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
 
 import static java.lang.Character.getNumericValue;
 
 /**
  * Google Translate API
+ * <p>
+ * Close it when it is no longer used. Close waits for running requests, then closes the http
+ * clients this object created; clients passed to a constructor are left open for their owner.
  */
-public class GoogleTranslate {
+public class GoogleTranslate implements AutoCloseable {
 
     private final HttpClient4 httpClient4;        // HttpClient
-    private final ArrayList<BigInteger> tkk;      // tkk for calculate tk
+    private final boolean ownsHttpClient4;        // created by this object, closed with it
+    private volatile HttpAsyncClient4 httpAsyncClient4; // non-blocking HttpClient, created on first async call
+    private boolean ownsHttpAsyncClient4;
+    private final InFlightRequests inFlight = new InFlightRequests();    // requests sent, for close
+    private final long tkk0;                      // tkk for calculate tk
+    private final long tkk1;
     private final HashMap<String, String> header; // Default Request Header
-    private static final String baseURL = "https://translate.googleapis.com/translate_a/t?client=webapp&dt=bd" +
-            "&dt=ex&dt=ld&dt=md&dt=qca&dt=rw&dt=rm&dt=ss&dt=t&dt=at&ie=UTF-8&oe=UTF-8&otf=2&ssel=0&tsel=0&kc=1" +
-            "&sl=%1$s&tl=%2$s&hl=%2$s&tk=%3$s";
+    private volatile TranslationCache cache;      // translate result cache, null means disabled
+    private volatile boolean singleFlight;        // collapse identical running requests
+    private volatile UnaryOperator<String> deduplication;   // normalized form of items sent once, null means off
+    private final SingleFlight<FlightKey, List<String>> flights = new SingleFlight<>(ArrayList::new);
+    private final SingleFlight<FlightKey, List<DetectedTranslation>> detectFlights =
+            new SingleFlight<>(ArrayList::new);
+    private volatile ChunkPlanner chunkPlanner;   // split & pack oversized requests
+    private volatile int chunkParallelism;        // max chunks of one call sent at once
+    private volatile ExecutorService executor;    // runs chunks in parallel, created on first use
+    private boolean ownsExecutor;
+    private ExecutionMode executionMode = ExecutionMode.PLATFORM;   // kind of threads of own executor
+    private volatile TranslateMetrics metrics = TranslateMetrics.NOOP; // hot path timings & sizes
+    private volatile EndpointPool endpointPool = EndpointPool.of(new Endpoint());    // hosts requests go to
+    private final TkCache tkCache = new TkCache(TkCache.DEFAULT_SLOTS);     // tk of recent short sources
+
+    private static final int DEFAULT_CHUNK_MAX_BYTES = 5000;
+    private static final int DEFAULT_CHUNK_MAX_ITEMS = 128;
+    private static final int DEFAULT_CHUNK_PARALLELISM = 4;
+    private static final int DEFAULT_MAX_PLATFORM_WORKERS = 64;     // fallback pool of VIRTUAL mode
+    private static final int DEFAULT_FAN_OUT_PARALLELISM = 8;
+    private static final long DEFAULT_CLOSE_TIMEOUT = 10000;
+    // precompiled rl op tables, see compileRl
+    private static final int RL_SHIFT_MASK = 0xff;
+    private static final int RL_SHIFT_RIGHT = 0x100;
+    private static final int RL_ADD = 0x200;
+    private static final long UINT32_MASK = 0xffffffffL;
+    private static final int[] RL_BYTE_OPS = compileRl("+-a^+6");
+    private static final int[] RL_FINAL_OPS = compileRl("+-3^+b+-f");
+
 
     /**
      * Default constructor
      */
     public GoogleTranslate(){
-        this(new HttpClient4());
+        this(new HttpClient4(), null, true);
     }
 
     /**
      * constructor
-     * @param httpClient4 a HttpClient4 object
+     * @param httpClient4 a HttpClient4 object, not closed by this object
      */
     public GoogleTranslate(HttpClient4 httpClient4){
+        this(httpClient4, null, false);
+    }
+
+    /**
+     * constructor
+     * @param httpClient4 a HttpClient4 object, not closed by this object
+     * @param httpAsyncClient4 a HttpAsyncClient4 object for async api, null to create it on first use
+     */
+    public GoogleTranslate(HttpClient4 httpClient4, HttpAsyncClient4 httpAsyncClient4){
+        this(httpClient4, httpAsyncClient4, false);
+    }
+
+    private GoogleTranslate(HttpClient4 httpClient4, HttpAsyncClient4 httpAsyncClient4, boolean ownsHttpClient4){
         this.httpClient4 = httpClient4;
+        this.ownsHttpClient4 = ownsHttpClient4;
+        this.httpAsyncClient4 = httpAsyncClient4;
 
-        this.tkk = new ArrayList<>();
-        tkk.add(new BigInteger("406398"));
-        tkk.add(new BigInteger("2087938574"));
+        this.chunkPlanner = new ChunkPlanner(DEFAULT_CHUNK_MAX_BYTES, DEFAULT_CHUNK_MAX_ITEMS);
+        this.chunkParallelism = DEFAULT_CHUNK_PARALLELISM;
+
+        this.tkk0 = 406398L;
+        this.tkk1 = 2087938574L;
 
         this.header = new HashMap<>();
         this.header.put("Accept", "*/*");
@@ -54,11 +133,169 @@ public class GoogleTranslate {
     }
 
     /**
-     * Destructor
+     * close, waits up to 10 seconds for running requests
      */
     @Override
-    protected void finalize(){
-        this.httpClient4.shutdown();
+    public void close() {
+        close(DEFAULT_CLOSE_TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * close: stop sending requests, wait for running ones, then release own threads & http clients
+     * @param timeout max time to wait for running requests
+     * @param unit unit of timeout
+     * @return true if all running requests finished in time
+     */
+    public boolean close(long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        boolean drained = false;
+        try {
+            drained = this.inFlight.closeAndAwait(timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (this.ownsExecutor && this.executor != null)
+                this.executor.shutdown();
+            long remaining = Math.max(0, deadline - System.nanoTime());
+            if (this.ownsHttpClient4)
+                drained &= this.httpClient4.close(remaining, TimeUnit.NANOSECONDS);
+            if (this.ownsHttpAsyncClient4)
+                drained &= this.httpAsyncClient4.close(remaining, TimeUnit.NANOSECONDS);
+        }
+        return drained;
+    }
+
+    /**
+     * open connections to every endpoint ahead of the first requests
+     * @param connections number of connections to open per endpoint
+     * @return number of open connections in the pool
+     */
+    public int warmUp(int connections) {
+        int opened = 0;
+        for (Endpoint endpoint : this.endpointPool.getEndpoints())
+            opened += this.httpClient4.warmUp(endpoint.getUrl(), connections);
+        return opened;
+    }
+
+    /**
+     * set endpoints requests are spread over, a failed request is retried once on another endpoint
+     * @param endpointPool EndpointPool
+     */
+    public void setEndpointPool(EndpointPool endpointPool) {
+        this.endpointPool = endpointPool;
+    }
+
+    /**
+     * get endpoints requests are spread over
+     * @return EndpointPool
+     */
+    public EndpointPool getEndpointPool() {
+        return this.endpointPool;
+    }
+
+    /**
+     * collapse identical requests: while a request is running, the same sources with the same
+     * languages wait for its result (or error) instead of sending their own request
+     * @param enabled true to enable
+     */
+    public void setSingleFlight(boolean enabled) {
+        this.singleFlight = enabled;
+    }
+
+    /**
+     * send every distinct item of a call once, its duplicates get the same result
+     * @param enabled true to enable
+     */
+    public void setDeduplication(boolean enabled) {
+        this.deduplication = enabled ? UnaryOperator.identity() : null;
+    }
+
+    /**
+     * send one item of those with equal normalized form, e.g. String::trim, the others get its result
+     * @param normalizer normalized form of an item, null to disable
+     */
+    public void setDeduplication(UnaryOperator<String> normalizer) {
+        this.deduplication = normalizer;
+    }
+
+    /**
+     * set translate result cache
+     * @param cache TranslationCache, null to disable
+     */
+    public void setCache(TranslationCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * get translate result cache
+     * @return TranslationCache, null if disabled
+     */
+    public TranslationCache getCache() {
+        return this.cache;
+    }
+
+    /**
+     * set size budget of one request, larger sources are split & larger lists are sent as several requests
+     * <p>
+     * On by default with 5000 bytes, 128 items & 4 parallel requests, Integer.MAX_VALUE for both
+     * budgets sends every call as one request.
+     * @param maxBytes max utf-8 bytes of sources in one request, at least 4
+     * @param maxItems max sources in one request
+     * @param parallelism max requests of one call sent at once
+     */
+    public void setChunking(int maxBytes, int maxItems, int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism must be positive");
+        this.chunkPlanner = new ChunkPlanner(maxBytes, maxItems);
+        this.chunkParallelism = parallelism;
+    }
+
+    /**
+     * set executor running chunks of blocking calls in parallel
+     * @param executor ExecutorService, not shut down by this object
+     */
+    public void setExecutor(ExecutorService executor) {
+        synchronized (this) {
+            this.executor = executor;
+            this.ownsExecutor = false;
+        }
+    }
+
+    /**
+     * set kind of threads running chunks in parallel & hedged requests, also set on the http client
+     * if this object created it
+     * <p>
+     * VIRTUAL runs them on virtual threads where the jdk supports it, so many concurrent calls
+     * (made from virtual threads too) don't need a sized thread pool. A client passed to the
+     * constructor may be shared, its owner sets it with HttpClient4.setExecutionMode.
+     * @param executionMode ExecutionMode, an executor set by setExecutor is replaced
+     */
+    public void setExecutionMode(ExecutionMode executionMode) {
+        synchronized (this) {
+            if (this.ownsExecutor && this.executor != null)
+                this.executor.shutdown();
+            this.executor = null;
+            this.executionMode = executionMode;
+            if (this.ownsHttpClient4)
+                this.httpClient4.setExecutionMode(executionMode);
+        }
+    }
+
+    /**
+     * set metrics listener, also set on the http clients this object created
+     * <p>
+     * Clients passed to the constructor may be shared, their owner sets metrics on them.
+     * @param metrics TranslateMetrics, null to disable
+     */
+    public void setMetrics(TranslateMetrics metrics) {
+        synchronized (this) {
+            this.metrics = metrics == null ? TranslateMetrics.NOOP : metrics;
+            if (this.ownsHttpClient4)
+                this.httpClient4.setMetrics(metrics);
+            if (this.httpAsyncClient4 != null && this.ownsHttpAsyncClient4)
+                this.httpAsyncClient4.setMetrics(metrics);
+        }
     }
 
     /**
@@ -70,7 +307,7 @@ public class GoogleTranslate {
      * @throws IOException source can't be encode to utf-8 / http request error
      */
     public List<String> translate(final String singleSource, String fromLang, String toLang) throws IOException {
-        return translate(new LinkedList<String>(){{add(singleSource);}}, fromLang, toLang);
+        return translate(Collections.singletonList(singleSource), fromLang, toLang);
     }
 
     /**
@@ -82,9 +319,98 @@ public class GoogleTranslate {
      * @throws IOException source can't be encode to utf-8 / http request error
      */
     public List<String> translate(List<String> source, String fromLang, String toLang) throws IOException {
-        String jsonResult = this.sendRequest(source, fromLang, toLang);
-        // json serialization
-        return transJsonSerialization(jsonResult, source.size() == 1);
+        DistinctSources distinct = distinct(source);
+        if (distinct != null)
+            return distinct.expand(translateDistinct(distinct.getSources(), fromLang, toLang));
+        return translateDistinct(source, fromLang, toLang);
+    }
+
+    /**
+     * translate api without duplicates
+     * @param source two or more source to translate
+     * @param fromLang origin language
+     * @param toLang target language
+     * @return List result
+     * @throws IOException source can't be encode to utf-8 / http request error
+     */
+    private List<String> translateDistinct(List<String> source, String fromLang, String toLang) throws IOException {
+        TranslationCache cache = this.cache;
+        if (cache == null)
+            return translateUncached(source, fromLang, toLang);
+
+        // only send sources not found in cache
+        String[] results = new String[source.size()];
+        List<Integer> missIndexes = lookupCache(cache, source, fromLang, toLang, results);
+        if (missIndexes.isEmpty())
+            return toResultList(results);
+        List<String> misses = pick(source, missIndexes);
+        List<String> missResults = translateUncached(misses, fromLang, toLang);
+        return mergeCacheMisses(cache, misses, missIndexes, missResults, fromLang, toLang, results);
+    }
+
+    /**
+     * translate api without cache
+     * @param source two or more source to translate
+     * @param fromLang origin language
+     * @param toLang target language
+     * @return List result
+     * @throws IOException source can't be encode to utf-8 / http request error
+     */
+    private List<String> translateUncached(List<String> source, final String fromLang, final String toLang)
+            throws IOException {
+        ChunkPlanner.Plan plan = this.chunkPlanner.plan(source);
+        if (plan.isSingleBatch())
+            return translateBatch(source, fromLang, toLang);
+        return plan.joinTranslations(runChunks(plan, batch -> translateBatch(batch, fromLang, toLang)));
+    }
+
+    /**
+     * translate one request
+     * @param source sources fitting in one request
+     * @param fromLang origin language
+     * @param toLang target language
+     * @return List result
+     * @throws IOException http request error
+     */
+    private List<String> translateBatch(final List<String> source, final String fromLang, final String toLang)
+            throws IOException {
+        // json result is parsed while it is read
+        if (!this.singleFlight)
+            return this.sendRequest(source, fromLang, toLang, new JsonResultParser(false, source.size()));
+        return this.flights.execute(new FlightKey(source, fromLang, toLang, false),
+                () -> this.sendRequest(source, fromLang, toLang, new JsonResultParser(false, source.size())));
+    }
+
+    /**
+     * translate source into every target language, requests of all languages run in parallel
+     * @param source source to translate
+     * @param fromLang origin language
+     * @param toLangs target languages
+     * @return result of every target language, in iteration order of toLangs
+     * @throws IOException source can't be encode to utf-8 / http request error
+     */
+    public Map<String, List<String>> translateToMany(List<String> source, String fromLang, Set<String> toLangs)
+            throws IOException {
+        return translateToMany(source, fromLang, toLangs, DEFAULT_FAN_OUT_PARALLELISM);
+    }
+
+    /**
+     * translate source into every target language, requests of all languages run in parallel
+     * <p>
+     * tk & post data don't depend on the target language, so they are built once for languages
+     * sending the same sources. Chunks of every language share one limit of parallel requests.
+     * @param source source to translate
+     * @param fromLang origin language
+     * @param toLangs target languages
+     * @param parallelism max requests sent at once
+     * @return result of every target language, in iteration order of toLangs
+     * @throws IOException source can't be encode to utf-8 / http request error
+     */
+    public Map<String, List<String>> translateToMany(List<String> source, final String fromLang,
+                                                     Set<String> toLangs, int parallelism) throws IOException {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism must be positive");
+        return new FanOut(this, this.cache, this.chunkPlanner).translateToMany(source, fromLang, toLangs, parallelism);
     }
 
     /**
@@ -94,7 +420,7 @@ public class GoogleTranslate {
      * @throws IOException source can't be encode to utf-8 / http request error
      */
     public List<String> detect(final String singleSource) throws IOException {
-        return detect(new LinkedList<String>(){{add(singleSource);}});
+        return detect(Collections.singletonList(singleSource));
     }
 
     /**
@@ -104,9 +430,585 @@ public class GoogleTranslate {
      * @throws IOException source can't be encode to utf-8 / http request error
      */
     public List<String> detect(List<String> source) throws IOException {
-        String jsonResult = this.sendRequest(source, "auto", "en");
-        // json serialization
-        return detectJsonSerialization(jsonResult, source.size() == 1);
+        DistinctSources distinct = distinct(source);
+        if (distinct != null)
+            return distinct.expand(detectDistinct(distinct.getSources()));
+        return detectDistinct(source);
+    }
+
+    /**
+     * detect language without duplicates
+     * @param source two or more source to detect
+     * @return List result
+     * @throws IOException source can't be encode to utf-8 / http request error
+     */
+    private List<String> detectDistinct(List<String> source) throws IOException {
+        ChunkPlanner.Plan plan = this.chunkPlanner.plan(source);
+        if (plan.isSingleBatch())
+            return detectBatch(source);
+        // a split source is detected by its first piece
+        return plan.firstOfEach(runChunks(plan, this::detectBatch));
+    }
+
+    /**
+     * detect one request
+     * @param source sources fitting in one request
+     * @return List result
+     * @throws IOException http request error
+     */
+    private List<String> detectBatch(final List<String> source) throws IOException {
+        // json result is parsed while it is read
+        if (!this.singleFlight)
+            return this.sendRequest(source, "auto", "en", new JsonResultParser(true, source.size()));
+        return this.flights.execute(new FlightKey(source, "auto", "en", true),
+                () -> this.sendRequest(source, "auto", "en", new JsonResultParser(true, source.size())));
+    }
+
+    /**
+     * detect language & translate in one request
+     * @param singleSource single source
+     * @param toLang target language
+     * @return List result
+     * @throws IOException source can't be encode to utf-8 / http request error
+     */
+    public List<DetectedTranslation> detectAndTranslate(final String singleSource, String toLang)
+            throws IOException {
+        return detectAndTranslate(Collections.singletonList(singleSource), toLang);
+    }
+
+    /**
+     * detect language & translate in one request
+     * <p>
+     * An 'auto' request answers both, so this costs the round trip of detect alone. Translations
+     * are cached under their detected language. Use translateDetected for more target languages.
+     * @param source two or more source
+     * @param toLang target language
+     * @return List result
+     * @throws IOException source can't be encode to utf-8 / http request error
+     */
+    public List<DetectedTranslation> detectAndTranslate(List<String> source, String toLang)
+            throws IOException {
+        DistinctSources distinct = distinct(source);
+        if (distinct != null)
+            return distinct.expand(detectAndTranslateDistinct(distinct.getSources(), toLang));
+        return detectAndTranslateDistinct(source, toLang);
+    }
+
+    /**
+     * detect language & translate in one request without duplicates
+     * @param source two or more source
+     * @param toLang target language
+     * @return List result
+     * @throws IOException source can't be encode to utf-8 / http request error
+     */
+    private List<DetectedTranslation> detectAndTranslateDistinct(List<String> source, final String toLang)
+            throws IOException {
+        ChunkPlanner.Plan plan = this.chunkPlanner.plan(source);
+        List<DetectedTranslation> results = plan.isSingleBatch() ? detectAndTranslateBatch(source, toLang)
+                : joinDetected(plan, toLang, runChunks(plan, batch -> detectAndTranslateBatch(batch, toLang)));
+        return cacheDetected(source, toLang, results);
+    }
+
+    /**
+     * detect & translate one request
+     * @param source sources fitting in one request
+     * @param toLang target language
+     * @return List result
+     * @throws IOException http request error
+     */
+    private List<DetectedTranslation> detectAndTranslateBatch(final List<String> source, final String toLang)
+            throws IOException {
+        if (!this.singleFlight)
+            return this.sendRequest(source, "auto", toLang, new DetectedResultParser(toLang, source.size()));
+        return this.detectFlights.execute(new FlightKey(source, "auto", toLang, true),
+                () -> this.sendRequest(source, "auto", toLang, new DetectedResultParser(toLang, source.size())));
+    }
+
+    /**
+     * translate results of detectAndTranslate into more languages, sources grouped by detected language
+     * @param source source passed to detectAndTranslate
+     * @param detected results of detectAndTranslate
+     * @param toLangs target languages
+     * @return result of every target language, in iteration order of toLangs
+     * @throws IOException source can't be encode to utf-8 / http request error
+     */
+    public Map<String, List<String>> translateDetected(List<String> source, List<DetectedTranslation> detected,
+                                                       Set<String> toLangs) throws IOException {
+        return translateDetected(source, detected, toLangs, DEFAULT_FAN_OUT_PARALLELISM);
+    }
+
+    /**
+     * translate results of detectAndTranslate into more languages, sources grouped by detected language
+     * <p>
+     * Every group is sent with its detected language as origin, requests of all groups & languages
+     * run in parallel. Translations already in detected, and sources already in a target language,
+     * are taken without a request.
+     * @param source source passed to detectAndTranslate
+     * @param detected results of detectAndTranslate
+     * @param toLangs target languages
+     * @param parallelism max requests sent at once
+     * @return result of every target language, in iteration order of toLangs
+     * @throws IOException source can't be encode to utf-8 / http request error
+     */
+    public Map<String, List<String>> translateDetected(List<String> source, List<DetectedTranslation> detected,
+                                                       Set<String> toLangs, int parallelism) throws IOException {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism must be positive");
+        if (source.size() != detected.size())
+            throw new IllegalArgumentException("source & detected differ in size");
+        return new FanOut(this, this.cache, this.chunkPlanner).translateDetected(source, detected, toLangs,
+                parallelism);
+    }
+
+    /**
+     * non-blocking translate api
+     * @param singleSource single source to translate
+     * @param fromLang origin language
+     * @param toLang target language
+     * @return future of List result
+     */
+    public CompletableFuture<List<String>> translateAsync(final String singleSource, String fromLang, String toLang) {
+        return translateAsync(Collections.singletonList(singleSource), fromLang, toLang);
+    }
+
+    /**
+     * non-blocking translate api
+     * @param source two or more source to translate
+     * @param fromLang origin language
+     * @param toLang target language
+     * @return future of List result
+     */
+    public CompletableFuture<List<String>> translateAsync(List<String> source, String fromLang, String toLang) {
+        DistinctSources distinct = distinct(source);
+        if (distinct != null)
+            return translateDistinctAsync(distinct.getSources(), fromLang, toLang).thenApply(distinct::expand);
+        return translateDistinctAsync(source, fromLang, toLang);
+    }
+
+    /**
+     * non-blocking translate api without duplicates
+     * @param source two or more source to translate
+     * @param fromLang origin language
+     * @param toLang target language
+     * @return future of List result
+     */
+    private CompletableFuture<List<String>> translateDistinctAsync(final List<String> source, final String fromLang,
+                                                                   final String toLang) {
+        final TranslationCache cache = this.cache;
+        if (cache == null)
+            return translateUncachedAsync(source, fromLang, toLang);
+
+        // only send sources not found in cache
+        final String[] results = new String[source.size()];
+        final List<Integer> missIndexes = lookupCache(cache, source, fromLang, toLang, results);
+        if (missIndexes.isEmpty())
+            return CompletableFuture.completedFuture(toResultList(results));
+        final List<String> misses = pick(source, missIndexes);
+        return translateUncachedAsync(misses, fromLang, toLang).thenApply(missResults ->
+                mergeCacheMisses(cache, misses, missIndexes, missResults, fromLang, toLang, results));
+    }
+
+    /**
+     * non-blocking translate api without cache
+     * @param source two or more source to translate
+     * @param fromLang origin language
+     * @param toLang target language
+     * @return future of List result
+     */
+    private CompletableFuture<List<String>> translateUncachedAsync(final List<String> source, final String fromLang,
+                                                                   final String toLang) {
+        final ChunkPlanner.Plan plan = this.chunkPlanner.plan(source);
+        if (plan.isSingleBatch())
+            return translateBatchAsync(source, fromLang, toLang);
+        return runChunksAsync(plan, batch -> translateBatchAsync(batch, fromLang, toLang))
+                .thenApply(completing(plan::joinTranslations));
+    }
+
+    /**
+     * non-blocking translate one request
+     * @param source sources fitting in one request
+     * @param fromLang origin language
+     * @param toLang target language
+     * @return future of List result
+     */
+    private CompletableFuture<List<String>> translateBatchAsync(final List<String> source, final String fromLang,
+                                                                final String toLang) {
+        if (!this.singleFlight)
+            return this.sendRequestAsync(source, fromLang, toLang, new JsonResultParser(false, source.size()));
+        return this.flights.executeAsync(new FlightKey(source, fromLang, toLang, false),
+                () -> this.sendRequestAsync(source, fromLang, toLang, new JsonResultParser(false, source.size())));
+    }
+
+    /**
+     * non-blocking detect language
+     * @param singleSource single source to detect
+     * @return future of List result
+     */
+    public CompletableFuture<List<String>> detectAsync(final String singleSource) {
+        return detectAsync(Collections.singletonList(singleSource));
+    }
+
+    /**
+     * non-blocking detect language
+     * @param source two or more source to detect
+     * @return future of List result
+     */
+    public CompletableFuture<List<String>> detectAsync(List<String> source) {
+        DistinctSources distinct = distinct(source);
+        if (distinct != null)
+            return detectDistinctAsync(distinct.getSources()).thenApply(distinct::expand);
+        return detectDistinctAsync(source);
+    }
+
+    /**
+     * non-blocking detect language without duplicates
+     * @param source two or more source to detect
+     * @return future of List result
+     */
+    private CompletableFuture<List<String>> detectDistinctAsync(final List<String> source) {
+        final ChunkPlanner.Plan plan = this.chunkPlanner.plan(source);
+        if (plan.isSingleBatch())
+            return detectBatchAsync(source);
+        return runChunksAsync(plan, this::detectBatchAsync).thenApply(completing(plan::firstOfEach));
+    }
+
+    /**
+     * non-blocking detect one request
+     * @param source sources fitting in one request
+     * @return future of List result
+     */
+    private CompletableFuture<List<String>> detectBatchAsync(final List<String> source) {
+        if (!this.singleFlight)
+            return this.sendRequestAsync(source, "auto", "en", new JsonResultParser(true, source.size()));
+        return this.flights.executeAsync(new FlightKey(source, "auto", "en", true),
+                () -> this.sendRequestAsync(source, "auto", "en", new JsonResultParser(true, source.size())));
+    }
+
+    /**
+     * non-blocking detect language & translate in one request
+     * @param singleSource single source
+     * @param toLang target language
+     * @return future of List result
+     */
+    public CompletableFuture<List<DetectedTranslation>> detectAndTranslateAsync(final String singleSource,
+                                                                                String toLang) {
+        return detectAndTranslateAsync(Collections.singletonList(singleSource), toLang);
+    }
+
+    /**
+     * non-blocking detect language & translate in one request
+     * @param source two or more source
+     * @param toLang target language
+     * @return future of List result
+     */
+    public CompletableFuture<List<DetectedTranslation>> detectAndTranslateAsync(List<String> source,
+                                                                                String toLang) {
+        DistinctSources distinct = distinct(source);
+        if (distinct != null)
+            return detectAndTranslateDistinctAsync(distinct.getSources(), toLang).thenApply(distinct::expand);
+        return detectAndTranslateDistinctAsync(source, toLang);
+    }
+
+    /**
+     * non-blocking detect language & translate in one request without duplicates
+     * @param source two or more source
+     * @param toLang target language
+     * @return future of List result
+     */
+    private CompletableFuture<List<DetectedTranslation>> detectAndTranslateDistinctAsync(final List<String> source,
+                                                                                         final String toLang) {
+        final ChunkPlanner.Plan plan = this.chunkPlanner.plan(source);
+        CompletableFuture<List<DetectedTranslation>> results = plan.isSingleBatch()
+                ? detectAndTranslateBatchAsync(source, toLang)
+                : runChunksAsync(plan, batch -> detectAndTranslateBatchAsync(batch, toLang))
+                        .thenApply(completing(batchResults -> joinDetected(plan, toLang, batchResults)));
+        return results.thenApply(detected -> cacheDetected(source, toLang, detected));
+    }
+
+    /**
+     * non-blocking detect & translate one request
+     * @param source sources fitting in one request
+     * @param toLang target language
+     * @return future of List result
+     */
+    private CompletableFuture<List<DetectedTranslation>> detectAndTranslateBatchAsync(final List<String> source,
+                                                                                      final String toLang) {
+        if (!this.singleFlight)
+            return this.sendRequestAsync(source, "auto", toLang, new DetectedResultParser(toLang, source.size()));
+        return this.detectFlights.executeAsync(new FlightKey(source, "auto", toLang, true),
+                () -> this.sendRequestAsync(source, "auto", toLang, new DetectedResultParser(toLang, source.size())));
+    }
+
+    /**
+     * join results of split sources, a split source is detected by its first piece
+     * @param plan chunk plan
+     * @param toLang target language
+     * @param batchResults result of every batch, in batch order
+     * @return List result
+     * @throws IOException a batch result misses or has a wrong size
+     */
+    private static List<DetectedTranslation> joinDetected(ChunkPlanner.Plan plan, String toLang,
+                                                          List<List<DetectedTranslation>> batchResults)
+            throws IOException {
+        List<List<String>> languages = new ArrayList<>(batchResults.size());
+        List<List<String>> translations = new ArrayList<>(batchResults.size());
+        for (List<DetectedTranslation> batch : batchResults) {
+            if (batch == null) {
+                // reported as size mismatch by the plan
+                languages.add(null);
+                translations.add(null);
+                continue;
+            }
+            List<String> batchLanguages = new ArrayList<>(batch.size());
+            List<String> batchTranslations = new ArrayList<>(batch.size());
+            for (DetectedTranslation item : batch) {
+                batchLanguages.add(item.getLanguage());
+                batchTranslations.add(item.getTranslation());
+            }
+            languages.add(batchLanguages);
+            translations.add(batchTranslations);
+        }
+        List<String> sourceLanguages = plan.firstOfEach(languages);
+        List<String> sourceTranslations = plan.joinTranslations(translations);
+        List<DetectedTranslation> results = new ArrayList<>(sourceLanguages.size());
+        for (int i = 0; i < sourceLanguages.size(); i++)
+            results.add(new DetectedTranslation(sourceLanguages.get(i), toLang, sourceTranslations.get(i)));
+        return results;
+    }
+
+    /**
+     * cache translations under their detected language
+     * @param source List source
+     * @param toLang target language
+     * @param detected results of source
+     * @return detected
+     */
+    private List<DetectedTranslation> cacheDetected(List<String> source, String toLang,
+                                                    List<DetectedTranslation> detected) {
+        TranslationCache cache = this.cache;
+        if (cache == null)
+            return detected;
+        Iterator<DetectedTranslation> results = detected.iterator();
+        for (String item : source) {
+            DetectedTranslation result = results.next();
+            cache.put(item, result.getLanguage(), toLang, result.getTranslation());
+        }
+        return detected;
+    }
+
+    /**
+     * run every batch of plan, at most chunkParallelism at once, the caller thread takes part
+     * @param plan chunk plan
+     * @param call blocking call of one batch
+     * @return result of every batch, in batch order
+     * @throws IOException http request error of any batch
+     */
+    private <T> List<T> runChunks(ChunkPlanner.Plan plan, final ChunkCall<T> call) throws IOException {
+        final List<List<String>> batches = plan.getBatches();
+        return runParallel(batches.size(), this.chunkParallelism, i -> call.call(batches.get(i)));
+    }
+
+    /**
+     * run calls 0 to count - 1, at most parallelism at once, the caller thread takes part
+     * @param count number of calls
+     * @param parallelism max calls running at once
+     * @param call blocking call by index
+     * @return result of every call, in index order
+     * @throws IOException http request error of any call
+     */
+    <T> List<T> runParallel(final int count, int parallelism, final IndexedCall<T> call) throws IOException {
+        final Object[] results = new Object[count];
+        final AtomicInteger next = new AtomicInteger();
+        Callable<Void> worker = () -> {
+            int i;
+            while ((i = next.getAndIncrement()) < count)
+                results[i] = call.call(i);
+            return null;
+        };
+
+        int workers = Math.min(parallelism, count);
+        List<Future<Void>> futures = new ArrayList<>(workers);
+        final AtomicBoolean[] started = new AtomicBoolean[workers];
+        ExecutorService executor = getExecutor();
+        for (int i = 1; i < workers; i++) {
+            final AtomicBoolean claim = started[i] = new AtomicBoolean();
+            futures.add(executor.submit(() -> claim.compareAndSet(false, true) ? worker.call() : null));
+        }
+        try {
+            worker.call();
+            for (int i = 1; i < workers; i++)
+                // a worker still queued in a busy bounded pool is dropped, not waited for
+                if (!started[i].compareAndSet(false, true))
+                    futures.get(i - 1).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting chunks", e);
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        } catch (Exception e) {
+            throw unwrap(e);
+        } finally {
+            // stop other workers on failure
+            next.set(count);
+        }
+        @SuppressWarnings("unchecked")
+        List<T> resultList = (List<T>) Arrays.asList(results);
+        return resultList;
+    }
+
+    /**
+     * run every batch of plan without blocking
+     * @param plan chunk plan
+     * @param call non-blocking call of one batch
+     * @return future of result of every batch, in batch order
+     */
+    private static <T> CompletableFuture<List<T>> runChunksAsync(
+            ChunkPlanner.Plan plan, Function<List<String>, CompletableFuture<T>> call) {
+        List<List<String>> batches = plan.getBatches();
+        final List<CompletableFuture<T>> futures = new ArrayList<>(batches.size());
+        for (List<String> batch : batches)
+            futures.add(call.apply(batch));
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            List<T> results = new ArrayList<>(futures.size());
+            for (CompletableFuture<T> future : futures)
+                results.add(future.join());
+            return results;
+        });
+    }
+
+    /**
+     * get executor, create a daemon thread pool on first use
+     * @return ExecutorService
+     */
+    private ExecutorService getExecutor() {
+        ExecutorService executor = this.executor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = this.executor;
+                if (executor == null) {
+                    if (this.inFlight.isClosed())
+                        throw new IllegalStateException("translate is closed");
+                    this.executor = executor = this.executionMode.newExecutor("gtrans-worker",
+                            DEFAULT_MAX_PLATFORM_WORKERS);
+                    this.ownsExecutor = true;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * turn failure of a worker into IOException
+     * @param cause failure
+     * @return IOException to throw
+     */
+    private static IOException unwrap(Throwable cause) {
+        if (cause instanceof IOException)
+            return (IOException) cause;
+        if (cause instanceof RuntimeException)
+            throw (RuntimeException) cause;
+        if (cause instanceof Error)
+            throw (Error) cause;
+        return new IOException(cause);
+    }
+
+    /**
+     * blocking call of one batch
+     */
+    private interface ChunkCall<T> {
+        T call(List<String> batch) throws IOException;
+    }
+
+    /**
+     * join of batch results which fails on a bad result
+     */
+    private interface ChunkJoin<T, R> {
+        R join(T batchResults) throws IOException;
+    }
+
+    /**
+     * join batch results of a future, a failed join fails the future
+     * @param join join of batch results
+     * @return Function for thenApply
+     */
+    private static <T, R> Function<T, R> completing(ChunkJoin<T, R> join) {
+        return batchResults -> {
+            try {
+                return join.join(batchResults);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        };
+    }
+
+    /**
+     * tk & post data of one request, shared by requests of every target language
+     */
+    static class PreparedRequest {
+
+        private final String tk;
+        private final ParamPairList postData;   // read only once built
+
+        PreparedRequest(String tk, ParamPairList postData) {
+            this.tk = tk;
+            this.postData = postData;
+        }
+    }
+
+    /**
+     * sources & languages of a request, key of single flight
+     */
+    private static final class FlightKey {
+
+        private final List<String> source;
+        private final String fromLang;
+        private final String toLang;
+        private final boolean detect;
+        private final int hash;
+
+        FlightKey(List<String> source, String fromLang, String toLang, boolean detect) {
+            // the caller may change its list, the key must not
+            this.source = source.size() == 1 ? Collections.singletonList(source.get(0)) : new ArrayList<>(source);
+            this.fromLang = fromLang;
+            this.toLang = toLang;
+            this.detect = detect;
+            this.hash = Objects.hash(this.source, fromLang, toLang, detect);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof FlightKey))
+                return false;
+            FlightKey other = (FlightKey) o;
+            return hash == other.hash && detect == other.detect && Objects.equals(fromLang, other.fromLang)
+                    && Objects.equals(toLang, other.toLang) && source.equals(other.source);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * blocking call by index
+     */
+    interface IndexedCall<T> {
+        T call(int i) throws IOException;
+    }
+
+    /**
+     * translate prepared request, its tk & post data are reused for every target language
+     * @param request tk & post data of source
+     * @param fromLang origin language
+     * @param toLang target language
+     * @return List result
+     * @throws IOException http request error / no result
+     */
+    List<String> translatePrepared(PreparedRequest request, String fromLang, String toLang) throws IOException {
+        return sendRequest(request, fromLang, toLang, new JsonResultParser(false, request.postData.size()));
     }
 
     /**
@@ -114,30 +1016,367 @@ public class GoogleTranslate {
      * @param source two or more source to translate
      * @param fromLang origin language
      * @param toLang target language
-     * @return json result
-     * @throws IOException source can't be encode to utf-8 / http request error
+     * @param parser parser of json result
+     * @return parsed result
+     * @throws IOException source can't be encode to utf-8 / http request error / no result
      */
-    private String sendRequest(List<String> source, String fromLang, String toLang) throws IOException {
+    private <T> T sendRequest(List<String> source, String fromLang, String toLang, ResponseParser<T> parser)
+            throws IOException {
+        return sendRequest(prepareRequest(source), fromLang, toLang, parser);
+    }
+
+    /**
+     * send prepared Request to Google Translate API server
+     * @param request tk & post data of source
+     * @param fromLang origin language
+     * @param toLang target language
+     * @param parser parser of json result
+     * @return parsed result
+     * @throws IOException http request error / no result
+     */
+    private <T> T sendRequest(PreparedRequest request, String fromLang, String toLang, ResponseParser<T> parser)
+            throws IOException {
+        EndpointPool pool = this.endpointPool;
+        Endpoint endpoint = pool.select();
+        enter();
+        try {
+            try {
+                return sendRequest(pool, endpoint, request, fromLang, toLang, parser);
+            } catch (IOException e) {
+                // fail over to another endpoint once, if the endpoint is at fault
+                Endpoint other = isEndpointFailure(e) ? pool.selectOther(endpoint) : null;
+                if (other == null || !tryFailover())
+                    throw e;
+                return sendRequest(pool, other, request, fromLang, toLang, parser);
+            }
+        } finally {
+            this.inFlight.exit();
+        }
+    }
+
+    /**
+     * send prepared Request to one endpoint & record its outcome
+     * @param pool pool of endpoint
+     * @param endpoint endpoint to send to
+     * @param request tk & post data of source
+     * @param fromLang origin language
+     * @param toLang target language
+     * @param parser parser of json result
+     * @return parsed result
+     * @throws IOException http request error / no result
+     */
+    private <T> T sendRequest(EndpointPool pool, Endpoint endpoint, PreparedRequest request, String fromLang,
+                              String toLang, ResponseParser<T> parser) throws IOException {
         // build url with params
+        String apiUrl = endpoint.apiUrl(fromLang, toLang, request.tk);
+
+        // parsed json result
+        pool.onStart(endpoint);
+        long start = System.nanoTime();
+        T result;
+        try {
+            result = this.httpClient4.doPost(apiUrl, this.header, null, request.postData, parser);
+        } catch (Throwable e) {
+            onError(pool, endpoint, e);
+            throw e;
+        }
+        if (result == null) {
+            pool.onFinish(endpoint);
+            throw new UnexpectedResultException("no result from translate api");
+        }
+        pool.onSuccess(endpoint, System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * build & send Request to Google Translate API server without blocking
+     * @param source two or more source to translate
+     * @param fromLang origin language
+     * @param toLang target language
+     * @param parser parser of json result
+     * @return future of parsed result
+     */
+    private <T> CompletableFuture<T> sendRequestAsync(List<String> source, final String fromLang,
+                                                      final String toLang, final ResponseParser<T> parser) {
+        final PreparedRequest request = prepareRequest(source);
+        final EndpointPool pool = this.endpointPool;
+        final Endpoint endpoint = pool.select();
+        try {
+            enter();
+        } catch (IllegalStateException e) {
+            return failedFuture(e);     // closed, fail like a request instead of throwing at the caller
+        }
+        final CompletableFuture<T> response;
+        try {
+            response = sendRequestAsync(pool, endpoint, request, fromLang, toLang, parser);
+        } catch (RuntimeException e) {
+            this.inFlight.exit();
+            return failedFuture(e);
+        }
+        return response.handle((result, error) -> {
+            if (error == null || !isEndpointFailure(cause(error)))
+                return response;
+            // fail over to another endpoint once, the endpoint is at fault
+            Endpoint other = pool.selectOther(endpoint);
+            if (other == null || !tryFailover())
+                return response;
+            try {
+                return sendRequestAsync(pool, other, request, fromLang, toLang, parser);
+            } catch (RuntimeException e) {
+                return GoogleTranslate.<T>failedFuture(e);
+            }
+        }).thenCompose(future -> future).whenComplete((result, error) -> this.inFlight.exit());
+    }
+
+    /**
+     * send prepared Request to one endpoint without blocking & record its outcome
+     * @param pool pool of endpoint
+     * @param endpoint endpoint to send to
+     * @param request tk & post data of source
+     * @param fromLang origin language
+     * @param toLang target language
+     * @param parser parser of json result
+     * @return future of parsed result
+     */
+    private <T> CompletableFuture<T> sendRequestAsync(final EndpointPool pool, final Endpoint endpoint,
+                                                      PreparedRequest request, String fromLang, String toLang,
+                                                      ResponseParser<T> parser) {
+        String apiUrl = endpoint.apiUrl(fromLang, toLang, request.tk);
+        pool.onStart(endpoint);
+        final long start = System.nanoTime();
+        CompletableFuture<T> response;
+        try {
+            response = this.getHttpAsyncClient4().doPost(apiUrl, this.header, request.postData, parser);
+        } catch (RuntimeException e) {
+            onError(pool, endpoint, e);
+            throw e;
+        }
+        return response.handle((result, error) -> {
+            if (error == null && result != null) {
+                pool.onSuccess(endpoint, System.nanoTime() - start);
+                return result;
+            }
+            if (error != null)
+                onError(pool, endpoint, cause(error));
+            else
+                pool.onFinish(endpoint);
+            if (error instanceof CompletionException)
+                throw (CompletionException) error;
+            if (error != null)
+                throw new CompletionException(error);
+            throw new CompletionException(new UnexpectedResultException("no result from translate api"));
+        });
+    }
+
+    /**
+     * record failed request to endpoint, only failures the endpoint is at fault for count
+     */
+    private static void onError(EndpointPool pool, Endpoint endpoint, Throwable error) {
+        if (isEndpointFailure(error))
+            pool.onFailure(endpoint);
+        else
+            pool.onFinish(endpoint);
+    }
+
+    /**
+     * whether endpoint is at fault for error: a connect / io failure or a 5xx answer, not a 4xx or
+     * unparsable answer, nor a local interrupt, pool timeout or closed client
+     * @param error failure of request
+     * @return true if error counts against endpoint health
+     */
+    static boolean isEndpointFailure(Throwable error) {
+        if (error instanceof HttpStatusException)
+            return ((HttpStatusException) error).getStatusCode() >= 500;
+        if (error instanceof UnexpectedResultException || error instanceof ConnectionPoolTimeoutException)
+            return false;
+        if (error instanceof InterruptedIOException)
+            return error instanceof SocketTimeoutException || error instanceof ConnectTimeoutException;
+        return error instanceof IOException;
+    }
+
+    /**
+     * take a failover from the retry budget of the client, failovers & retries share it
+     * @return false if the budget is used up
+     */
+    private boolean tryFailover() {
+        RetryPolicy retry = this.httpClient4.getRetryPolicy();
+        return retry == null || retry.tryRetry();
+    }
+
+    private static Throwable cause(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private static <T> CompletableFuture<T> failedFuture(Throwable error) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(error);
+        return future;
+    }
+
+    /**
+     * collapse duplicates of source if deduplication is on
+     * @param source List source
+     * @return DistinctSources, null if off or source has no duplicate
+     */
+    DistinctSources distinct(List<String> source) {
+        UnaryOperator<String> normalizer = this.deduplication;
+        return normalizer == null ? null : DistinctSources.of(source, normalizer);
+    }
+
+    /**
+     * count a request as running
+     * @throws IllegalStateException closed
+     */
+    private void enter() {
+        if (!this.inFlight.tryEnter())
+            throw new IllegalStateException("translate is closed");
+    }
+
+    /**
+     * get async client, create it on first use
+     * @return HttpAsyncClient4
+     */
+    private HttpAsyncClient4 getHttpAsyncClient4() {
+        HttpAsyncClient4 client = this.httpAsyncClient4;
+        if (client == null) {
+            synchronized (this) {
+                client = this.httpAsyncClient4;
+                if (client == null) {
+                    if (this.inFlight.isClosed())
+                        throw new IllegalStateException("translate is closed");
+                    client = new HttpAsyncClient4();
+                    client.setMetrics(this.metrics);
+                    this.httpAsyncClient4 = client;
+                    this.ownsHttpAsyncClient4 = true;
+                }
+            }
+        }
+        return client;
+    }
+
+    /**
+     * build api url with tk of source
+     * @param source List translate source
+     * @param fromLang origin language
+     * @param toLang target language
+     * @return api url
+     */
+    String buildApiUrl(List<String> source, String fromLang, String toLang) {
+        return this.endpointPool.select().apiUrl(fromLang, toLang, tokenOf(source));
+    }
+
+    /**
+     * get tk of source from cache or calculate it
+     * @param source List translate source
+     * @return tk
+     */
+    private String tokenOf(List<String> source) {
+        long start = System.nanoTime();
         String strSource = sourceToString(source);
-        String apiUrl = addUrlParams(fromLang, toLang, this.calculateTk(strSource));
+        String tk = this.tkCache.get(strSource);
+        if (tk == null) {
+            tk = this.calculateTk(strSource);
+            this.tkCache.put(strSource, tk);
+        }
+        this.metrics.recordLatency(Phase.TOKEN, System.nanoTime() - start);
+        return tk;
+    }
+
+    /**
+     * calculate tk & build post data of source, they don't depend on languages
+     * @param source List translate source
+     * @return PreparedRequest
+     */
+    PreparedRequest prepareRequest(List<String> source) {
+        return new PreparedRequest(tokenOf(source), buildPostData(source));
+    }
 
-        // build data of post request
+    /**
+     * build data of post request & record batch size
+     * @param source List translate source
+     * @return post data
+     */
+    private ParamPairList buildPostData(List<String> source) {
+        TranslateMetrics metrics = this.metrics;
+        metrics.recordBatchSize(source.size());
+        long start = System.nanoTime();
         ParamPairList postData = getPostData(source);
+        metrics.recordLatency(Phase.BUILD_REQUEST, System.nanoTime() - start);
+        return postData;
+    }
 
-        // json result
-        return this.httpClient4.doPost(apiUrl, this.header, postData);
+    /**
+     * fill results with cached translations
+     * @param cache TranslationCache
+     * @param source List translate source
+     * @param fromLang origin language
+     * @param toLang target language
+     * @param results array to fill, same size as source
+     * @return indexes of source not in cache
+     */
+    static List<Integer> lookupCache(TranslationCache cache, List<String> source, String fromLang,
+                                     String toLang, String[] results) {
+        List<Integer> missIndexes = new ArrayList<>();
+        int i = 0;
+        for (String item : source) {
+            results[i] = cache.get(item, fromLang, toLang);
+            if (results[i] == null)
+                missIndexes.add(i);
+            i++;
+        }
+        return missIndexes;
     }
 
     /**
-     * build api url
+     * cache translated misses & merge them into results in original order
+     * @param cache TranslationCache
+     * @param misses sources sent to server
+     * @param missIndexes index of every miss in results
+     * @param missResults translations of misses
      * @param fromLang origin language
      * @param toLang target language
-     * @param tk tk of source
-     * @return api url
+     * @param results cached results, misses are null
+     * @return List result
+     */
+    static List<String> mergeCacheMisses(TranslationCache cache, List<String> misses,
+                                         List<Integer> missIndexes, List<String> missResults,
+                                         String fromLang, String toLang, String[] results) {
+        for (int i = 0; i < missIndexes.size(); i++) {
+            String translation = missResults.get(i);
+            results[missIndexes.get(i)] = translation;
+            cache.put(misses.get(i), fromLang, toLang, translation);
+        }
+        return toResultList(results);
+    }
+
+    /**
+     * pick items of source by indexes
+     * @param source List source
+     * @param indexes indexes to pick
+     * @return List picked items
+     */
+    static List<String> pick(List<String> source, List<Integer> indexes) {
+        List<String> picked = new ArrayList<>(indexes.size());
+        if (indexes.size() == source.size()) {
+            picked.addAll(source);
+            return picked;
+        }
+        List<String> randomAccess = source instanceof RandomAccess ? source : new ArrayList<>(source);
+        for (int index : indexes)
+            picked.add(randomAccess.get(index));
+        return picked;
+    }
+
+    /**
+     * array to result list
+     * @param results array result
+     * @return List result
      */
-    private String addUrlParams(String fromLang, String toLang, String tk){
-        return String.format(baseURL, fromLang, toLang, tk);
+    static List<String> toResultList(String[] results) {
+        List<String> resultList = new ArrayList<>(results.length);
+        for (String item : results)
+            resultList.add(item);
+        return resultList;
     }
 
     /**
@@ -146,7 +1385,12 @@ public class GoogleTranslate {
      * @return String combined source
      */
     private String sourceToString(List<String> source){
-        StringBuilder combineStr = new StringBuilder();
+        if (source.size() == 1)
+            return source.get(0);
+        int length = 0;
+        for (String item : source)
+            length += item.length();
+        StringBuilder combineStr = new StringBuilder(length);
         for(String item: source)
             combineStr.append(item);
         return combineStr.toString();
@@ -157,51 +1401,13 @@ public class GoogleTranslate {
      * @param source List translate source
      * @return ParamPairList
      */
-    private ParamPairList getPostData(List<String> source) {
-        ParamPairList paramPairList = new ParamPairList();
+    ParamPairList getPostData(List<String> source) {
+        ParamPairList paramPairList = new ParamPairList(source.size());
         for(String item: source)
             paramPairList.add("q", item);
         return paramPairList;
     }
 
-    /**
-     * serialize translate json result
-     * @param jsonResult result
-     * @param isSingle single or multiple result
-     * @return List<String>
-     */
-    private List<String> transJsonSerialization(String jsonResult, boolean isSingle){
-        List<String> resultList = new LinkedList<>();
-        if (isSingle){
-            resultList.add(JsonParser.parseString(jsonResult).getAsJsonArray().get(0).getAsString());
-        } else {
-            // jsonResult like "[[[[["hello, world"]],null,"ko"],[[["hello my friends"]],null,"zh-cn"]]]"
-            JsonArray resultArray = JsonParser.parseString(jsonResult).getAsJsonArray().get(0).getAsJsonArray();
-            for (JsonElement item : resultArray)
-                resultList.add(item.getAsJsonArray().get(0).getAsJsonArray().get(0).getAsJsonArray().get(0).getAsString());
-        }
-        return resultList;
-    }
-
-    /**
-     * serialize detect json result
-     * @param jsonResult result
-     * @param isSingle single or multiple result
-     * @return List<String>
-     */
-    private List<String> detectJsonSerialization(String jsonResult, boolean isSingle){
-        List<String> resultList = new LinkedList<>();
-        if (isSingle){
-            resultList.add(JsonParser.parseString(jsonResult).getAsJsonArray().get(1).getAsString());
-        } else {
-            // jsonResult like "[[[[["hello, world"]],null,"ko"],[[["hello my friends"]],null,"zh-cn"]]]"
-            JsonArray resultArray = JsonParser.parseString(jsonResult).getAsJsonArray().get(0).getAsJsonArray();
-            for (JsonElement item : resultArray)
-                resultList.add(item.getAsJsonArray().get(2).getAsString());
-        }
-        return resultList;
-    }
-
     /**
      * calculate tk
      * @param source str to translate
@@ -210,27 +1416,46 @@ public class GoogleTranslate {
     public String calculateTk(String source) {
         byte[] sourceBytes = source.getBytes(StandardCharsets.UTF_8); // encode utf-8
 
-        BigInteger a = tkk.get(0);
+        // every step keeps 'a' inside unsigned 32 bit range, so long arithmetic is exact
+        long a = tkk0;
         for (byte k : sourceBytes)
-            // java byte range from -127~128, use '& 0xff' turn to range 0~256
-            a = rl(a.add(new BigInteger(String.valueOf(k & 0xff))), "+-a^+6");
-        a = rl(a, "+-3^+b+-f");
+            // java byte range from -128~127, use '& 0xff' turn to range 0~255
+            a = rl(a + (k & 0xff), RL_BYTE_OPS);
+        a = rl(a, RL_FINAL_OPS);
 
-        a = a.xor(tkk.get(1));
-        if (a.compareTo(new BigInteger("0")) < 0)
-            a = (a.and(new BigInteger("2147483647"))).add(new BigInteger("2147483648"));
-        a = a.remainder(new BigInteger("1000000")); // get mod
+        a ^= tkk1;
+        if (a < 0)
+            a = (a & 2147483647L) + 2147483648L;
+        a %= 1000000L; // get mod
 
-        return String.format("%s.%s", a, a.xor(tkk.get(0)));
+        return new StringBuilder(24).append(a).append('.').append(a ^ tkk0).toString();
     }
 
     /**
      * util function for calculate tk
-     * @param a BigInteger
-     * @param b String
-     * @return BigInteger
+     * @param a unsigned 32 bit value
+     * @param ops op table built by compileRl
+     * @return long
      */
-    private static BigInteger rl(BigInteger a, String b){
+    private static long rl(long a, int[] ops){
+        for (int op : ops){
+            int e = op & RL_SHIFT_MASK;
+            long f = (op & RL_SHIFT_RIGHT) != 0 ? a >>> e : a << e;
+            if ((op & RL_ADD) != 0)
+                a = (a + f) & UINT32_MASK;
+            else
+                a ^= f;
+        }
+        return a;
+    }
+
+    /**
+     * compile rl op string (like "+-a^+6") to op table
+     * @param b op string, every 3 chars is one op: [+ add | ^ xor][+ right | - left][shift in base 36]
+     * @return int[] one entry per op, shift | RL_SHIFT_RIGHT | RL_ADD
+     */
+    private static int[] compileRl(String b){
+        int[] ops = new int[b.length() / 3];
         for (int c = 0; c < b.length() - 2; c += 3){
             char d = b.charAt(c + 2);
             int e;
@@ -239,17 +1464,13 @@ public class GoogleTranslate {
             else
                 e = getNumericValue((int)d);
 
-            BigInteger f;
+            int op = e;
             if (b.charAt(c + 1) == '+')
-                f = a.shiftRight(e);
-            else
-                f = a.shiftLeft(e);
-
+                op |= RL_SHIFT_RIGHT;
             if (b.charAt(c) == '+')
-                a = a.add(f).and(new BigInteger("4294967295"));
-            else
-                a = a.xor(f);
+                op |= RL_ADD;
+            ops[c / 3] = op;
         }
-        return a;
+        return ops;
     }
 }
@@ -0,0 +1,175 @@
+package pers.translate.gtrans.api;
+
+import pers.translate.gtrans.cache.LruTranslationCache;
+import pers.translate.gtrans.cache.TranslationCache;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Incremental translation of documents that change a little at a time
+ * <p>
+ * A document is split into line segments, the translation of every segment is remembered under
+ * the hash of its content. Translating a changed document again only sends the new or edited
+ * segments, in one bulk call, and stitches their translations together with the remembered ones.
+ * Line breaks and blank lines are kept as is. Pass a MappedTranslationMemory as memory to keep
+ * segment translations across restarts.
+ */
+public class IncrementalTranslate {
+
+    private static final int DEFAULT_MAX_SEGMENTS = 100000;
+
+    private final GoogleTranslate googleTranslate;
+    private final TranslationCache memory;      // translation by segment hash & languages
+    private final LongAdder sentSegments = new LongAdder();
+    private final LongAdder reusedSegments = new LongAdder();
+
+    /**
+     * constructor, remembers up to 100000 segments in memory
+     * @param googleTranslate client api to send changed segments
+     */
+    public IncrementalTranslate(GoogleTranslate googleTranslate) {
+        this(googleTranslate, new LruTranslationCache(DEFAULT_MAX_SEGMENTS, 0));
+    }
+
+    /**
+     * constructor
+     * @param googleTranslate client api to send changed segments
+     * @param memory store of segment translations, keyed by segment hash instead of text
+     */
+    public IncrementalTranslate(GoogleTranslate googleTranslate, TranslationCache memory) {
+        this.googleTranslate = googleTranslate;
+        this.memory = memory;
+    }
+
+    /**
+     * translate document, only segments not translated before are sent
+     * @param document document
+     * @param fromLang origin language
+     * @param toLang target language
+     * @return translated document
+     * @throws IOException http request error
+     */
+    public String translate(String document, String fromLang, String toLang) throws IOException {
+        return translate(Collections.singletonList(document), fromLang, toLang).get(0);
+    }
+
+    /**
+     * translate documents, changed segments of all documents are sent together
+     * @param documents documents
+     * @param fromLang origin language
+     * @param toLang target language
+     * @return translated documents, in order
+     * @throws IOException http request error
+     */
+    public List<String> translate(List<String> documents, String fromLang, String toLang) throws IOException {
+        MessageDigest digest = newDigest();
+        List<List<LineSegment>> segmented = new ArrayList<>(documents.size());
+        List<List<String>> hashes = new ArrayList<>(documents.size());
+        Map<String, String> translations = new HashMap<>();         // by hash, known so far
+        LinkedHashMap<String, String> changed = new LinkedHashMap<>(); // text by hash, each sent once
+
+        for (String document : documents) {
+            List<LineSegment> segments = split(document);
+            List<String> segmentHashes = new ArrayList<>(segments.size());
+            for (LineSegment segment : segments) {
+                String hash = segment.blank ? null : hash(digest, segment.text);
+                segmentHashes.add(hash);
+                if (hash == null || changed.containsKey(hash))
+                    continue;
+                if (translations.containsKey(hash)) {
+                    reusedSegments.increment();
+                    continue;
+                }
+                String translation = memory.get(hash, fromLang, toLang);
+                if (translation != null) {
+                    translations.put(hash, translation);
+                    reusedSegments.increment();
+                } else {
+                    changed.put(hash, segment.text);
+                }
+            }
+            segmented.add(segments);
+            hashes.add(segmentHashes);
+        }
+
+        if (!changed.isEmpty()) {
+            List<String> results = googleTranslate.translate(new ArrayList<>(changed.values()), fromLang, toLang);
+            if (results == null || results.size() != changed.size())
+                throw new IOException("segment result size mismatch, expected " + changed.size());
+            int i = 0;
+            for (String hash : changed.keySet()) {
+                String translation = results.get(i++);
+                translations.put(hash, translation);
+                if (translation != null)
+                    memory.put(hash, fromLang, toLang, translation);
+            }
+            sentSegments.add(changed.size());
+        }
+
+        // stitch documents back together
+        List<String> translated = new ArrayList<>(documents.size());
+        for (int d = 0; d < segmented.size(); d++) {
+            List<LineSegment> segments = segmented.get(d);
+            List<String> segmentHashes = hashes.get(d);
+            StringBuilder document = new StringBuilder();
+            for (int s = 0; s < segments.size(); s++) {
+                LineSegment segment = segments.get(s);
+                document.append(segment.blank ? segment.text : translations.get(segmentHashes.get(s)));
+                document.append(segment.lineBreak);
+            }
+            translated.add(document.toString());
+        }
+        return translated;
+    }
+
+    /**
+     * @return number of segments sent, every distinct changed segment of a call counts once
+     */
+    public long getSentSegments() {
+        return sentSegments.sum();
+    }
+
+    /**
+     * @return number of segments taken from memory without a request
+     */
+    public long getReusedSegments() {
+        return reusedSegments.sum();
+    }
+
+    /**
+     * split document into line segments
+     */
+    private static List<LineSegment> split(String document) throws IOException {
+        List<LineSegment> segments = new ArrayList<>();
+        LineSegmentReader in = new LineSegmentReader(new StringReader(document));
+        LineSegment segment;
+        while ((segment = in.read()) != null)
+            segments.add(segment);
+        return segments;
+    }
+
+    private static String hash(MessageDigest digest, String text) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(
+                digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);     // every jvm has SHA-256
+        }
+    }
+}
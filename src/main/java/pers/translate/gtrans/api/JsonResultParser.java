@@ -0,0 +1,105 @@
+package pers.translate.gtrans.api;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.MalformedJsonException;
+import pers.translate.gtrans.http.HttpStatusException;
+import pers.translate.gtrans.http.ResponseParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming parser of translate api json result
+ * <p>
+ * Only translations or detected languages are read into memory, everything else is skipped
+ * token by token, no json tree & no String of the whole body is built.
+ * <pre>
+ * single result:   ["hallo","en", ...]
+ * multiple result: [[[[["hallo"]],null,"en"],[[["welt"]],null,"en"]], ...]
+ * </pre>
+ */
+class JsonResultParser implements ResponseParser<List<String>> {
+
+    private final boolean detect;       // read detected languages instead of translations
+    private final int expectedSize;     // number of sources, 1 means single result
+
+    /**
+     * constructor
+     * @param detect read detected languages instead of translations
+     * @param expectedSize number of sources, 1 means single result
+     */
+    JsonResultParser(boolean detect, int expectedSize) {
+        this.detect = detect;
+        this.expectedSize = expectedSize;
+    }
+
+    @Override
+    public List<String> parse(InputStream content) throws IOException {
+        return parse(new InputStreamReader(content, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * parse json result
+     * @param content json result
+     * @return List result
+     * @throws IOException read error / unexpected json
+     */
+    List<String> parse(Reader content) throws IOException {
+        JsonReader reader = new JsonReader(content);
+        try {
+            reader.beginArray();
+            if (expectedSize == 1) {
+                List<String> results = new ArrayList<>(1);
+                if (detect)
+                    reader.skipValue();
+                results.add(reader.nextString());
+                return results;
+            }
+
+            List<String> results = new ArrayList<>(expectedSize);
+            reader.beginArray();
+            while (reader.hasNext()) {
+                reader.beginArray();
+                if (detect) {
+                    reader.skipValue();
+                    reader.skipValue();
+                    results.add(reader.nextString());
+                } else {
+                    reader.beginArray();
+                    reader.beginArray();
+                    results.add(reader.nextString());
+                    endArray(reader);
+                    endArray(reader);
+                }
+                endArray(reader);
+            }
+            // a short or truncated answer mustn't be matched to the wrong sources
+            if (results.size() != expectedSize)
+                throw new UnexpectedResultException("unexpected result size " + results.size()
+                        + ", expected " + expectedSize);
+            return results;
+        } catch (IllegalStateException | MalformedJsonException e) {
+            // JsonReader reports a token of unexpected type or malformed json this way
+            throw new UnexpectedResultException("unexpected json result: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public List<String> onStatus(int statusCode) throws IOException {
+        throw new HttpStatusException(statusCode);
+    }
+
+    /**
+     * skip rest values of current array & end it
+     */
+    static void endArray(JsonReader reader) throws IOException {
+        while (reader.hasNext())
+            reader.skipValue();
+        reader.endArray();
+    }
+}
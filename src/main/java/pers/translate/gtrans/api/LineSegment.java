@@ -0,0 +1,17 @@
+package pers.translate.gtrans.api;
+
+/**
+ * One line of text without its line break, see LineSegmentReader
+ */
+final class LineSegment {
+
+    final String text;
+    final String lineBreak;     // "\n", "\r\n", "\r" or "" at end of input
+    final boolean blank;
+
+    LineSegment(String text, String lineBreak) {
+        this.text = text;
+        this.lineBreak = lineBreak;
+        this.blank = text.trim().isEmpty();
+    }
+}
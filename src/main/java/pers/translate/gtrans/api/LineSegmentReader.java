@@ -0,0 +1,93 @@
+package pers.translate.gtrans.api;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Split a Reader into line segments
+ * <p>
+ * Chars are read in blocks into a buffer of its own & scanned there for line breaks, a line is
+ * copied out once; no per char call into the (synchronized) Reader. "\r\n", "\r" & "\n" are kept.
+ */
+final class LineSegmentReader {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final Reader in;
+    private final char[] buffer;
+    private int pos;
+    private int limit;
+
+    /**
+     * constructor
+     * @param in input, needs no buffering of its own
+     */
+    LineSegmentReader(Reader in) {
+        this(in, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * constructor
+     * @param in input, needs no buffering of its own
+     * @param bufferSize chars read at once
+     */
+    LineSegmentReader(Reader in, int bufferSize) {
+        if (bufferSize < 1)
+            throw new IllegalArgumentException("bufferSize must be positive");
+        this.in = in;
+        this.buffer = new char[bufferSize];
+    }
+
+    /**
+     * read next line, keep its line break
+     * @return LineSegment, null at end of input
+     * @throws IOException read error
+     */
+    LineSegment read() throws IOException {
+        StringBuilder line = null;     // only for a line crossing the buffer end
+        while (true) {
+            if (pos == limit && !fill())
+                return line == null || line.length() == 0 ? null : new LineSegment(line.toString(), "");
+            int start = pos;
+            while (pos < limit) {
+                char c = buffer[pos];
+                if (c != '\n' && c != '\r') {
+                    pos++;
+                    continue;
+                }
+                String text = line == null ? new String(buffer, start, pos - start)
+                        : line.append(buffer, start, pos - start).toString();
+                pos++;
+                if (c == '\n')
+                    return new LineSegment(text, "\n");
+                // "\r" may be followed by "\n" in the next block
+                if (pos == limit && !fill())
+                    return new LineSegment(text, "\r");
+                if (buffer[pos] == '\n') {
+                    pos++;
+                    return new LineSegment(text, "\r\n");
+                }
+                return new LineSegment(text, "\r");
+            }
+            if (line == null)
+                line = new StringBuilder();
+            line.append(buffer, start, pos - start);
+        }
+    }
+
+    /**
+     * read next block into buffer
+     * @return false at end of input
+     */
+    private boolean fill() throws IOException {
+        int n;
+        do {
+            n = in.read(buffer, 0, buffer.length);
+        } while (n == 0);
+        if (n < 0)
+            return false;
+        pos = 0;
+        limit = n;
+        return true;
+    }
+}
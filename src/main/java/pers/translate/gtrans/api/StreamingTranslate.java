@@ -0,0 +1,209 @@
+package pers.translate.gtrans.api;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Streaming bulk translation of large text
+ * <p>
+ * Input is split into line segments, lines are packed into request sized batches and at most
+ * maxInFlight batches are sent at once. Results are written in input order, so memory use only
+ * depends on batch size and window, not on input size. Line breaks and blank lines are kept as is.
+ * <p>
+ * By default batches are sent through the non-blocking client, which has no rate limiter, retry
+ * or hedge policy. Set an executor with {@link #setExecutor} to send them through the blocking
+ * HttpClient4 instead, so its rate limiter, retry & hedge policy apply.
+ */
+public class StreamingTranslate {
+
+    private static final int DEFAULT_MAX_ITEMS = 64;
+    private static final int DEFAULT_MAX_BYTES = 4096;
+    private static final int DEFAULT_MAX_IN_FLIGHT = 8;
+
+    private final GoogleTranslate googleTranslate;
+    private final int maxItems;         // max lines of one batch
+    private final int maxBytes;         // max utf-8 bytes of one batch, a single larger line is sent alone
+    private final int maxInFlight;      // max batches waiting for response
+    private volatile Executor executor; // runs blocking sends, null means non-blocking client
+
+    /**
+     * Default constructor
+     * @param googleTranslate client api to send batches
+     */
+    public StreamingTranslate(GoogleTranslate googleTranslate){
+        this(googleTranslate, DEFAULT_MAX_ITEMS, DEFAULT_MAX_BYTES, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * constructor
+     * @param googleTranslate client api to send batches
+     * @param maxItems max lines of one batch
+     * @param maxBytes max utf-8 bytes of one batch
+     * @param maxInFlight max batches waiting for response
+     */
+    public StreamingTranslate(GoogleTranslate googleTranslate, int maxItems, int maxBytes, int maxInFlight){
+        if (maxItems < 1 || maxBytes < 1 || maxInFlight < 1)
+            throw new IllegalArgumentException("maxItems, maxBytes and maxInFlight must be positive");
+        this.googleTranslate = googleTranslate;
+        this.maxItems = maxItems;
+        this.maxBytes = maxBytes;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * send batches with the blocking client on executor, so rate limiter, retry & hedge policy of
+     * HttpClient4 apply; give it maxInFlight threads to keep the whole window in flight
+     * @param executor Executor, null to send through the non-blocking client (default)
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * translate file, output is utf-8
+     * @param source utf-8 input file
+     * @param target output file, replaced if exists
+     * @param fromLang origin language
+     * @param toLang target language
+     * @return number of translated lines
+     * @throws IOException file error / http request error
+     */
+    public long translate(Path source, Path target, String fromLang, String toLang) throws IOException {
+        try (Reader reader = Files.newBufferedReader(source, StandardCharsets.UTF_8);
+             Writer writer = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+            return translate(reader, writer, fromLang, toLang);
+        }
+    }
+
+    /**
+     * translate stream, writer is flushed but not closed
+     * @param reader input
+     * @param writer output
+     * @param fromLang origin language
+     * @param toLang target language
+     * @return number of translated lines
+     * @throws IOException stream error / http request error
+     */
+    public long translate(Reader reader, Writer writer, String fromLang, String toLang) throws IOException {
+        LineSegmentReader in = new LineSegmentReader(reader);
+        BufferedWriter out = writer instanceof BufferedWriter ? (BufferedWriter) writer : new BufferedWriter(writer);
+        ArrayDeque<Batch> window = new ArrayDeque<>(maxInFlight);
+        long translated = 0;
+
+        Batch batch = new Batch();
+        LineSegment segment;
+        while ((segment = in.read()) != null) {
+            int bytes = segment.text.getBytes(StandardCharsets.UTF_8).length;
+            // blank lines count as items too, so a batch never grows without bound
+            if (batch.segments.size() >= maxItems
+                    || (!batch.sources.isEmpty() && batch.bytes + bytes > maxBytes)) {
+                translated += submit(batch, window, out, fromLang, toLang);
+                batch = new Batch();
+            }
+            batch.add(segment, bytes);
+        }
+        translated += submit(batch, window, out, fromLang, toLang);
+
+        // drain window
+        while (!window.isEmpty())
+            write(window.poll(), out);
+        out.flush();
+        return translated;
+    }
+
+    /**
+     * send batch, wait for the eldest batch first when window is full
+     * @return number of lines sent
+     */
+    private long submit(Batch batch, ArrayDeque<Batch> window, Writer out, String fromLang, String toLang)
+            throws IOException {
+        if (batch.segments.isEmpty())
+            return 0;
+        while (window.size() >= maxInFlight)
+            write(window.poll(), out);
+
+        Executor executor = this.executor;
+        if (batch.sources.isEmpty())
+            batch.result = CompletableFuture.completedFuture(Collections.<String>emptyList());
+        else if (executor != null)
+            batch.result = CompletableFuture.supplyAsync(() -> sendBlocking(batch, fromLang, toLang), executor);
+        else
+            batch.result = googleTranslate.translateAsync(batch.sources, fromLang, toLang);
+        window.add(batch);
+        return batch.sources.size();
+    }
+
+    /**
+     * send batch with the blocking client
+     * @return List result
+     * @throws CompletionException http request error
+     */
+    private List<String> sendBlocking(Batch batch, String fromLang, String toLang) {
+        try {
+            return googleTranslate.translate(batch.sources, fromLang, toLang);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * wait batch result & write segments in order
+     */
+    private static void write(Batch batch, Writer out) throws IOException {
+        List<String> result = await(batch.result);
+        if (result == null || result.size() != batch.sources.size())
+            throw new IOException("batch result size mismatch, expected " + batch.sources.size());
+
+        int i = 0;
+        for (LineSegment segment : batch.segments) {
+            out.write(segment.blank ? segment.text : result.get(i++));
+            out.write(segment.lineBreak);
+        }
+    }
+
+    private static List<String> await(CompletableFuture<List<String>> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting batch", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * lines of one request, blank lines are kept but not sent
+     */
+    private static class Batch {
+
+        private final List<LineSegment> segments = new ArrayList<>();
+        private final List<String> sources = new ArrayList<>();
+        private int bytes;
+        private CompletableFuture<List<String>> result;
+
+        void add(LineSegment segment, int bytes) {
+            segments.add(segment);
+            if (!segment.blank) {
+                sources.add(segment.text);
+                this.bytes += bytes;
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package pers.translate.gtrans.api;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Small direct-mapped cache of tk by source
+ * <p>
+ * A slot is picked by hash of source, a newer source simply replaces the older one. Lookup is
+ * one array read & one equals, no lock, no eviction bookkeeping. Only short sources are kept,
+ * a long source costs more to compare & hold than its tk costs to calculate.
+ */
+class TkCache {
+
+    static final int DEFAULT_SLOTS = 1024;
+    static final int MAX_SOURCE_LENGTH = 512;
+
+    private final AtomicReferenceArray<Entry> slots;
+    private final int mask;
+
+    /**
+     * constructor
+     * @param slots number of slots, rounded up to a power of two
+     */
+    TkCache(int slots) {
+        int size = Integer.highestOneBit(Math.max(1, slots - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * @param source source of tk
+     * @return cached tk, null if not cached
+     */
+    String get(String source) {
+        if (source.length() > MAX_SOURCE_LENGTH)
+            return null;
+        Entry entry = slots.get(spread(source.hashCode()) & mask);
+        return entry != null && entry.source.equals(source) ? entry.tk : null;
+    }
+
+    /**
+     * @param source source of tk
+     * @param tk tk of source
+     */
+    void put(String source, String tk) {
+        if (source.length() <= MAX_SOURCE_LENGTH)
+            slots.set(spread(source.hashCode()) & mask, new Entry(source, tk));
+    }
+
+    // mix high bits in, short strings differ mostly in low bits of their hash
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    private static class Entry {
+
+        private final String source;
+        private final String tk;
+
+        Entry(String source, String tk) {
+            this.source = source;
+            this.tk = tk;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package pers.translate.gtrans.api;
+
+import java.io.IOException;
+
+/**
+ * Translate api answered, but not with a result that can be parsed
+ * <p>
+ * Tells a bad answer apart from a failing endpoint, it doesn't count against endpoint health.
+ */
+class UnexpectedResultException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    UnexpectedResultException(String message) {
+        super(message);
+    }
+
+    UnexpectedResultException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
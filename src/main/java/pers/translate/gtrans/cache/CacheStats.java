@@ -0,0 +1,56 @@
+package pers.translate.gtrans.cache;
+
+/**
+ * Snapshot of cache counters
+ */
+public class CacheStats {
+
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long size;
+
+    /**
+     * constructor
+     * @param hitCount number of lookups found in cache
+     * @param missCount number of lookups not found in cache
+     * @param evictionCount number of entries removed by size bound or ttl
+     * @param size current number of entries
+     */
+    public CacheStats(long hitCount, long missCount, long evictionCount, long size) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.size = size;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * hit rate of all lookups
+     * @return 0~1, 1 when no lookup yet
+     */
+    public double hitRate() {
+        long total = hitCount + missCount;
+        return total == 0 ? 1.0 : (double) hitCount / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CacheStats{hit=%d, miss=%d, eviction=%d, size=%d}", hitCount, missCount, evictionCount, size);
+    }
+}
@@ -0,0 +1,117 @@
+package pers.translate.gtrans.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-memory translation cache with LRU eviction and optional TTL
+ */
+public class LruTranslationCache implements TranslationCache {
+
+    private static final int DEFAULT_MAX_SIZE = 10000;
+
+    private final int maxSize;          // max number of entries
+    private final long ttlMillis;       // entry time to live, 0 means never expire
+    private final LinkedHashMap<String, Entry> entries;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * Default constructor, 10000 entries and no ttl
+     */
+    public LruTranslationCache() {
+        this(DEFAULT_MAX_SIZE, 0);
+    }
+
+    /**
+     * constructor
+     * @param maxSize max number of entries
+     * @param ttlMillis entry time to live, 0 means never expire
+     */
+    public LruTranslationCache(int maxSize, long ttlMillis) {
+        if (maxSize < 1 || ttlMillis < 0)
+            throw new IllegalArgumentException("maxSize must be positive, ttlMillis not negative");
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        // access order, the eldest entry is the least recently used
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    @Override
+    public synchronized String get(String source, String fromLang, String toLang) {
+        String key = key(source, fromLang, toLang);
+        Entry entry = entries.get(key);
+        if (entry != null && entry.isExpired(System.currentTimeMillis())) {
+            entries.remove(key);
+            evictionCount++;
+            entry = null;
+        }
+        if (entry == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return entry.value;
+    }
+
+    @Override
+    public synchronized void put(String source, String fromLang, String toLang, String result) {
+        if (result == null)
+            return;
+        long expireAt = ttlMillis == 0 ? Long.MAX_VALUE : System.currentTimeMillis() + ttlMillis;
+        entries.put(key(source, fromLang, toLang), new Entry(result, expireAt));
+        if (entries.size() > maxSize)
+            evict();
+    }
+
+    @Override
+    public synchronized CacheStats stats() {
+        return new CacheStats(hitCount, missCount, evictionCount, entries.size());
+    }
+
+    /**
+     * drop all entries, counters are kept
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * remove least recently used entries until size fits, expired ones are dropped lazily by get
+     */
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext() && entries.size() > maxSize) {
+            it.next();
+            it.remove();
+            evictionCount++;
+        }
+    }
+
+    /**
+     * build map key, '\u0000' can't appear in language code
+     */
+    private static String key(String source, String fromLang, String toLang) {
+        return fromLang + '\u0000' + toLang + '\u0000' + source;
+    }
+
+    /**
+     * cached value with expire time
+     */
+    private static class Entry {
+
+        private final String value;
+        private final long expireAt;
+
+        Entry(String value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+
+        boolean isExpired(long now) {
+            return now >= expireAt;
+        }
+    }
+}
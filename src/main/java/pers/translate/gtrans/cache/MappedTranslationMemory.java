@@ -0,0 +1,539 @@
+package pers.translate.gtrans.cache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent translation memory, an append-only log plus a hash index, both memory-mapped
+ * <p>
+ * Log file: 16 bytes header, then records of [int keyLength][int valueLength][int crc32][key][value],
+ * key is utf-8 of "fromLang \0 toLang \0 source". A record with keyLength 0 marks the end of log.
+ * <p>
+ * Index file: 32 bytes header, then open addressing slots of [int hash][long record offset], offset 0 is empty.
+ * Lookups compare the key directly against the mapped log, only the value of a hit is copied to heap.
+ * <p>
+ * The index is marked dirty while the memory is open and clean after {@link #close()}. A dirty index
+ * (crash, kill) is rebuilt from the log on next open, a torn log tail failing its crc is cut off.
+ * One log file is limited to 2GB, call {@link #compact()} to drop overwritten records.
+ */
+public class MappedTranslationMemory implements TranslationCache, Closeable {
+
+    private static final String LOG_FILE = "translation.log";
+    private static final String INDEX_FILE = "translation.idx";
+    private static final String COMPACT_SUFFIX = ".compact";
+
+    private static final long LOG_MAGIC = 0x47545241_4e534c47L;   // "GTRANSLG"
+    private static final long INDEX_MAGIC = 0x47545241_4e534958L; // "GTRANSIX"
+    private static final int INDEX_VERSION = 1;
+
+    private static final int LOG_HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 12;
+    private static final int INITIAL_LOG_SIZE = 1 << 20;
+
+    private static final int INDEX_HEADER_SIZE = 32;
+    private static final int INDEX_CLEAN_POS = 12;
+    private static final int INDEX_LOG_END_POS = 16;
+    private static final int INDEX_CAPACITY_POS = 24;
+    private static final int INDEX_SIZE_POS = 28;
+    private static final int SLOT_SIZE = 12;
+    private static final int INITIAL_INDEX_CAPACITY = 1 << 12;
+    private static final double INDEX_LOAD_FACTOR = 0.7;
+
+    private final Path dir;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private FileChannel logChannel;
+    private FileChannel indexChannel;
+    private MappedByteBuffer log;       // guarded by lock, remapped on growth
+    private MappedByteBuffer index;     // guarded by lock, remapped on growth
+    private int logEnd;                 // offset of next record
+    private int indexCapacity;          // number of slots, power of two
+    private int indexSize;              // number of used slots
+    private long garbageBytes;          // bytes of overwritten records
+    private boolean closed;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * open translation memory, create files if absent
+     * @param dir directory of log & index file
+     * @throws IOException file can't be created / log file is broken
+     */
+    public MappedTranslationMemory(Path dir) throws IOException {
+        this.dir = dir;
+        Files.createDirectories(dir);
+        open();
+    }
+
+    @Override
+    public String get(String source, String fromLang, String toLang) {
+        byte[] key = key(source, fromLang, toLang);
+        int hash = hash(key);
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            int offset = findRecord(key, hash);
+            if (offset == 0) {
+                missCount.incrementAndGet();
+                return null;
+            }
+            hitCount.incrementAndGet();
+            int keyLength = log.getInt(offset);
+            int valueLength = log.getInt(offset + 4);
+            byte[] value = new byte[valueLength];
+            ByteBuffer view = log.duplicate();
+            view.position(offset + RECORD_HEADER_SIZE + keyLength);
+            view.get(value);
+            return new String(value, StandardCharsets.UTF_8);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void put(String source, String fromLang, String toLang, String result) {
+        if (result == null)
+            return;
+        byte[] key = key(source, fromLang, toLang);
+        byte[] value = result.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(key);
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            int old = findRecord(key, hash);
+            if (old != 0 && valueEquals(old, key.length, value))
+                return;
+            int offset = append(key, value);
+            if (old != 0) {
+                garbageBytes += recordSize(log.getInt(old), log.getInt(old + 4));
+                replaceSlot(hash, old, offset);
+            } else {
+                insertSlot(hash, offset);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("can't write translation memory " + dir, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public CacheStats stats() {
+        lock.readLock().lock();
+        try {
+            return new CacheStats(hitCount.get(), missCount.get(), 0, indexSize);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * get share of log occupied by overwritten records
+     * @return 0~1
+     */
+    public double garbageRatio() {
+        lock.readLock().lock();
+        try {
+            int used = logEnd - LOG_HEADER_SIZE;
+            return used == 0 ? 0 : (double) garbageBytes / used;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * flush log & index pages to disk
+     */
+    public void sync() {
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            log.force();
+            index.putLong(INDEX_LOG_END_POS, logEnd);
+            index.putInt(INDEX_SIZE_POS, indexSize);
+            index.force();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * rewrite log with live records only, then rebuild index
+     * <p>
+     * New log is written aside and atomically renamed over the old one, the index stays dirty
+     * until the rebuild is done, so a crash at any point recovers from either the old or new log.
+     * @throws IOException file error
+     */
+    public void compact() throws IOException {
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            Path compactPath = dir.resolve(LOG_FILE + COMPACT_SUFFIX);
+            long liveSize = (long) logEnd - garbageBytes;
+            try (FileChannel out = FileChannel.open(compactPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer compacted = out.map(FileChannel.MapMode.READ_WRITE, 0,
+                        Math.max(INITIAL_LOG_SIZE, liveSize + RECORD_HEADER_SIZE));
+                compacted.putLong(0, LOG_MAGIC);
+                int position = LOG_HEADER_SIZE;
+                // copy live records in slot order
+                for (int slot = 0; slot < indexCapacity; slot++) {
+                    int offset = (int) index.getLong(slotPosition(slot) + 4);
+                    if (offset == 0)
+                        continue;
+                    int size = recordSize(log.getInt(offset), log.getInt(offset + 4));
+                    ByteBuffer record = log.duplicate();
+                    record.position(offset).limit(offset + size);
+                    compacted.position(position);
+                    compacted.put(record);
+                    position += size;
+                }
+                compacted.force();
+            }
+
+            logChannel.close();
+            Files.move(compactPath, dir.resolve(LOG_FILE),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            openLog();
+            rebuildIndex(indexCapacity);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * flush & close, the index is marked clean so next open skips the rebuild
+     */
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (closed)
+                return;
+            closed = true;
+            log.force();
+            index.putLong(INDEX_LOG_END_POS, logEnd);
+            index.putInt(INDEX_SIZE_POS, indexSize);
+            index.force();
+            index.putInt(INDEX_CLEAN_POS, 1);
+            index.force();
+            logChannel.close();
+            indexChannel.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * map log & index, recover them if last close was not clean
+     * @throws IOException file error
+     */
+    private void open() throws IOException {
+        openLog();
+
+        indexChannel = FileChannel.open(dir.resolve(INDEX_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean clean = false;
+        if (indexChannel.size() >= INDEX_HEADER_SIZE) {
+            index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, indexChannel.size());
+            long end = index.getLong(INDEX_LOG_END_POS);
+            int capacity = index.getInt(INDEX_CAPACITY_POS);
+            clean = index.getLong(0) == INDEX_MAGIC
+                    && index.getInt(8) == INDEX_VERSION
+                    && index.getInt(INDEX_CLEAN_POS) == 1
+                    && capacity > 0 && Integer.bitCount(capacity) == 1
+                    && indexChannel.size() >= INDEX_HEADER_SIZE + (long) capacity * SLOT_SIZE
+                    && end >= LOG_HEADER_SIZE
+                    && end + RECORD_HEADER_SIZE <= log.capacity() && log.getInt((int) end) == 0;
+            if (clean) {
+                logEnd = (int) end;
+                indexCapacity = capacity;
+                indexSize = index.getInt(INDEX_SIZE_POS);
+                garbageBytes = logEnd - LOG_HEADER_SIZE - liveBytes();
+            }
+        }
+        if (!clean)
+            rebuildIndex(INITIAL_INDEX_CAPACITY);
+
+        // dirty until close
+        index.putInt(INDEX_CLEAN_POS, 0);
+        index.force();
+    }
+
+    /**
+     * open & map log file, write header of new log
+     * @throws IOException file error / not a log file
+     */
+    private void openLog() throws IOException {
+        logChannel = FileChannel.open(dir.resolve(LOG_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = logChannel.size();
+        if (size > Integer.MAX_VALUE)
+            throw new IOException("translation log larger than 2GB: " + dir);
+        log = logChannel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, INITIAL_LOG_SIZE));
+        if (size == 0)
+            log.putLong(0, LOG_MAGIC);
+        else if (log.getLong(0) != LOG_MAGIC)
+            throw new IOException("not a translation log: " + dir.resolve(LOG_FILE));
+    }
+
+    /**
+     * scan log from start, cut off torn tail & rebuild index
+     * @param minCapacity min slot count of new index
+     * @throws IOException file error
+     */
+    private void rebuildIndex(int minCapacity) throws IOException {
+        int capacity = minCapacity;
+        mapIndex(capacity);
+        indexSize = 0;
+        garbageBytes = 0;
+
+        CRC32 crc = new CRC32();
+        int position = LOG_HEADER_SIZE;
+        while (position + RECORD_HEADER_SIZE <= log.capacity()) {
+            int keyLength = log.getInt(position);
+            int valueLength = log.getInt(position + 4);
+            if (keyLength == 0)
+                break;
+            long end = (long) position + recordSize(keyLength, valueLength);
+            if (keyLength < 0 || valueLength < 0 || end > log.capacity())
+                break;
+            ByteBuffer body = log.duplicate();
+            body.position(position + RECORD_HEADER_SIZE).limit((int) end);
+            crc.reset();
+            crc.update(body);
+            if ((int) crc.getValue() != log.getInt(position + 8))
+                break;
+
+            if (indexSize + 1 > capacity * INDEX_LOAD_FACTOR) {
+                capacity <<= 1;
+                growIndex(capacity);
+            }
+            byte[] key = new byte[keyLength];
+            ByteBuffer keyView = log.duplicate();
+            keyView.position(position + RECORD_HEADER_SIZE);
+            keyView.get(key);
+            int hash = hash(key);
+            int old = findRecord(key, hash);
+            if (old != 0) {
+                garbageBytes += recordSize(log.getInt(old), log.getInt(old + 4));
+                replaceSlot(hash, old, position);
+            } else {
+                insertSlot(hash, position);
+            }
+            position = (int) end;
+        }
+
+        // zero torn tail, so the scan stops here next time
+        for (int i = position; i < log.capacity() && i < position + RECORD_HEADER_SIZE; i++)
+            log.put(i, (byte) 0);
+        logEnd = position;
+        log.force();
+        index.putLong(INDEX_LOG_END_POS, logEnd);
+        index.putInt(INDEX_SIZE_POS, indexSize);
+    }
+
+    /**
+     * sum record size of all indexed records
+     * @return bytes
+     */
+    private long liveBytes() {
+        long live = 0;
+        for (int slot = 0; slot < indexCapacity; slot++) {
+            int offset = (int) index.getLong(slotPosition(slot) + 4);
+            if (offset != 0)
+                live += recordSize(log.getInt(offset), log.getInt(offset + 4));
+        }
+        return live;
+    }
+
+    /**
+     * append record to log, grow mapping when needed
+     * @param key key bytes
+     * @param value value bytes
+     * @return record offset
+     * @throws IOException file error / log full
+     */
+    private int append(byte[] key, byte[] value) throws IOException {
+        long end = (long) logEnd + recordSize(key.length, value.length);
+        // keep room for the zero end mark
+        if (end + RECORD_HEADER_SIZE > log.capacity()) {
+            long size = log.capacity();
+            while (size < end + RECORD_HEADER_SIZE)
+                size <<= 1;
+            size = Math.min(size, Integer.MAX_VALUE);
+            if (end + RECORD_HEADER_SIZE > size)
+                throw new IOException("translation log full, compact it or use another directory: " + dir);
+            log = logChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(key);
+        crc.update(value);
+
+        int offset = logEnd;
+        // body first, header last, a torn record fails its crc
+        ByteBuffer body = log.duplicate();
+        body.position(offset + RECORD_HEADER_SIZE);
+        body.put(key);
+        body.put(value);
+        log.putInt((int) end, 0);
+        log.putInt(offset + 8, (int) crc.getValue());
+        log.putInt(offset + 4, value.length);
+        log.putInt(offset, key.length);
+        logEnd = (int) end;
+
+        if (indexSize + 1 > indexCapacity * INDEX_LOAD_FACTOR)
+            growIndex(indexCapacity << 1);
+        return offset;
+    }
+
+    /**
+     * find record offset of key
+     * @param key key bytes
+     * @param hash hash of key
+     * @return offset, 0 if absent
+     */
+    private int findRecord(byte[] key, int hash) {
+        int mask = indexCapacity - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int position = slotPosition(slot);
+            int offset = (int) index.getLong(position + 4);
+            if (offset == 0)
+                return 0;
+            if (index.getInt(position) == hash && keyEquals(offset, key))
+                return offset;
+        }
+    }
+
+    /**
+     * compare key with key of record in mapped log
+     */
+    private boolean keyEquals(int offset, byte[] key) {
+        if (log.getInt(offset) != key.length)
+            return false;
+        int start = offset + RECORD_HEADER_SIZE;
+        for (int i = 0; i < key.length; i++)
+            if (log.get(start + i) != key[i])
+                return false;
+        return true;
+    }
+
+    /**
+     * compare value with value of record in mapped log
+     */
+    private boolean valueEquals(int offset, int keyLength, byte[] value) {
+        if (log.getInt(offset + 4) != value.length)
+            return false;
+        int start = offset + RECORD_HEADER_SIZE + keyLength;
+        for (int i = 0; i < value.length; i++)
+            if (log.get(start + i) != value[i])
+                return false;
+        return true;
+    }
+
+    /**
+     * put offset into first empty slot of hash
+     */
+    private void insertSlot(int hash, int offset) {
+        int mask = indexCapacity - 1;
+        int slot = hash & mask;
+        while (index.getLong(slotPosition(slot) + 4) != 0)
+            slot = (slot + 1) & mask;
+        index.putInt(slotPosition(slot), hash);
+        index.putLong(slotPosition(slot) + 4, offset);
+        indexSize++;
+    }
+
+    /**
+     * point slot holding old offset to new offset
+     */
+    private void replaceSlot(int hash, int oldOffset, int newOffset) {
+        int mask = indexCapacity - 1;
+        int slot = hash & mask;
+        while (index.getLong(slotPosition(slot) + 4) != oldOffset)
+            slot = (slot + 1) & mask;
+        index.putLong(slotPosition(slot) + 4, newOffset);
+    }
+
+    /**
+     * map a new empty index
+     * @param capacity slot count
+     * @throws IOException file error
+     */
+    private void mapIndex(int capacity) throws IOException {
+        long size = INDEX_HEADER_SIZE + (long) capacity * SLOT_SIZE;
+        indexChannel.truncate(0);
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        index.putLong(0, INDEX_MAGIC);
+        index.putInt(8, INDEX_VERSION);
+        index.putInt(INDEX_CLEAN_POS, 0);
+        index.putInt(INDEX_CAPACITY_POS, capacity);
+        indexCapacity = capacity;
+    }
+
+    /**
+     * rehash all slots into a bigger index
+     * @param capacity new slot count
+     * @throws IOException file error
+     */
+    private void growIndex(int capacity) throws IOException {
+        int[] hashes = new int[indexSize];
+        int[] offsets = new int[indexSize];
+        int n = 0;
+        for (int slot = 0; slot < indexCapacity; slot++) {
+            int position = slotPosition(slot);
+            int offset = (int) index.getLong(position + 4);
+            if (offset != 0) {
+                hashes[n] = index.getInt(position);
+                offsets[n++] = offset;
+            }
+        }
+        mapIndex(capacity);
+        indexSize = 0;
+        for (int i = 0; i < n; i++)
+            insertSlot(hashes[i], offsets[i]);
+    }
+
+    private void checkOpen() {
+        if (closed)
+            throw new IllegalStateException("translation memory is closed: " + dir);
+    }
+
+    private static int slotPosition(int slot) {
+        return INDEX_HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private static int recordSize(int keyLength, int valueLength) {
+        return RECORD_HEADER_SIZE + keyLength + valueLength;
+    }
+
+    /**
+     * build key bytes, '\u0000' can't appear in language code
+     */
+    private static byte[] key(String source, String fromLang, String toLang) {
+        return (fromLang + '\u0000' + toLang + '\u0000' + source).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * FNV-1a hash with final mix
+     */
+    private static int hash(byte[] key) {
+        int h = 0x811c9dc5;
+        for (byte b : key)
+            h = (h ^ (b & 0xff)) * 0x01000193;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,33 @@
+package pers.translate.gtrans.cache;
+
+/**
+ * Translation result cache, keyed by (source text, fromLang, toLang)
+ * <p>
+ * Implementations must be thread safe.
+ */
+public interface TranslationCache {
+
+    /**
+     * get cached translation
+     * @param source source text
+     * @param fromLang origin language
+     * @param toLang target language
+     * @return translation, null if absent or expired
+     */
+    String get(String source, String fromLang, String toLang);
+
+    /**
+     * cache translation
+     * @param source source text
+     * @param fromLang origin language
+     * @param toLang target language
+     * @param result translation
+     */
+    void put(String source, String fromLang, String toLang, String result);
+
+    /**
+     * get cache counters
+     * @return CacheStats
+     */
+    CacheStats stats();
+}
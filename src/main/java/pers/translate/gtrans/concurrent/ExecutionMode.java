@@ -0,0 +1,28 @@
+package pers.translate.gtrans.concurrent;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Kind of threads running background work of the blocking api
+ */
+public enum ExecutionMode {
+
+    /** cached pool of platform threads */
+    PLATFORM,
+
+    /** a virtual thread per task where the jdk supports it, else a bounded platform pool */
+    VIRTUAL;
+
+    /**
+     * create executor of this mode
+     * @param name thread name
+     * @param maxPlatformThreads size of the fallback platform pool of VIRTUAL mode
+     * @return ExecutorService
+     */
+    public ExecutorService newExecutor(String name, int maxPlatformThreads) {
+        if (this == VIRTUAL)
+            return VirtualThreads.newExecutor(name, maxPlatformThreads);
+        return Executors.newCachedThreadPool(VirtualThreads.daemonFactory(name));
+    }
+}
@@ -0,0 +1,84 @@
+package pers.translate.gtrans.concurrent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Counter of running requests for a graceful close
+ * <p>
+ * Once closed no request enters any more, close waits until the running ones leave. Entering &
+ * leaving only touch an atomic counter, the lock is taken by the last leaving request after close.
+ */
+public final class InFlightRequests {
+
+    private final AtomicInteger count = new AtomicInteger();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition drained = lock.newCondition();
+    private volatile boolean closed;
+
+    /**
+     * start a request, every successful enter must be followed by one exit
+     * @return false if closed
+     */
+    public boolean tryEnter() {
+        count.incrementAndGet();
+        if (closed) {
+            exit();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * finish a request
+     */
+    public void exit() {
+        if (count.decrementAndGet() == 0 && closed) {
+            lock.lock();
+            try {
+                drained.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * stop accepting requests & wait for running ones
+     * @param timeout max time to wait
+     * @param unit unit of timeout
+     * @return true if no request is running any more
+     * @throws InterruptedException interrupted while waiting
+     */
+    public boolean closeAndAwait(long timeout, TimeUnit unit) throws InterruptedException {
+        closed = true;
+        long nanos = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (count.get() > 0) {
+                if (nanos <= 0)
+                    return false;
+                nanos = drained.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return true if closed
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * @return number of running requests
+     */
+    public int count() {
+        return count.get();
+    }
+}
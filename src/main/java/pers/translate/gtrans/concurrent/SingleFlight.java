@@ -0,0 +1,126 @@
+package pers.translate.gtrans.concurrent;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Collapses concurrent calls with equal keys into one
+ * <p>
+ * The first caller of a key runs the call, callers arriving while it runs wait for it & get its
+ * result or its exception. A call arriving after it finished runs again, nothing is cached.
+ * @param <K> key type, needs equals & hashCode
+ * @param <V> result type
+ */
+public final class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> calls = new ConcurrentHashMap<>();
+    private final UnaryOperator<V> share;     // gives every caller its own copy of result
+
+    /**
+     * constructor, every caller gets the same result object
+     */
+    public SingleFlight() {
+        this(UnaryOperator.identity());
+    }
+
+    /**
+     * constructor
+     * @param share copies result for every caller, for mutable results
+     */
+    public SingleFlight(UnaryOperator<V> share) {
+        this.share = share;
+    }
+
+    /**
+     * blocking call
+     */
+    public interface Call<V> {
+        V call() throws IOException;
+    }
+
+    /**
+     * run call, or wait for the running call of an equal key
+     * @param key key of call
+     * @param call blocking call
+     * @return result of call
+     * @throws IOException error of call / interrupted while waiting
+     */
+    public V execute(K key, Call<V> call) throws IOException {
+        CompletableFuture<V> own = new CompletableFuture<>();
+        CompletableFuture<V> running = calls.putIfAbsent(key, own);
+        if (running != null)
+            return share.apply(await(running));
+
+        try {
+            V result = call.call();
+            own.complete(result);
+            // waiting callers copy the completed result, the caller mustn't change it meanwhile
+            return share.apply(result);
+        } catch (IOException | RuntimeException | Error e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            calls.remove(key, own);
+        }
+    }
+
+    /**
+     * start call, or join the running call of an equal key
+     * @param key key of call
+     * @param call starts a non-blocking call
+     * @return future of result
+     */
+    public CompletableFuture<V> executeAsync(final K key, Supplier<CompletableFuture<V>> call) {
+        CompletableFuture<V> own = new CompletableFuture<>();
+        CompletableFuture<V> running = calls.putIfAbsent(key, own);
+        if (running != null)
+            return running.thenApply(share);
+
+        CompletableFuture<V> started;
+        try {
+            started = call.get();
+        } catch (RuntimeException e) {
+            calls.remove(key, own);
+            own.completeExceptionally(e);
+            throw e;
+        }
+        started.whenComplete((result, error) -> {
+            calls.remove(key, own);
+            if (error != null)
+                own.completeExceptionally(error);
+            else
+                own.complete(result);
+        });
+        return own.thenApply(share);
+    }
+
+    /**
+     * @return number of running calls
+     */
+    public int size() {
+        return calls.size();
+    }
+
+    private static <V> V await(CompletableFuture<V> running) throws IOException {
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting identical request");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
+}
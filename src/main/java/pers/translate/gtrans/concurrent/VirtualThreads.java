@@ -0,0 +1,83 @@
+package pers.translate.gtrans.concurrent;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Virtual threads of jdk 21+, looked up at runtime so the library still runs on java 8
+ */
+public final class VirtualThreads {
+
+    private static final Method OF_VIRTUAL;                 // Thread.ofVirtual()
+    private static final Method BUILDER_NAME;               // Thread.Builder.name(String, long)
+    private static final Method BUILDER_FACTORY;            // Thread.Builder.factory()
+    private static final Method NEW_THREAD_PER_TASK;        // Executors.newThreadPerTaskExecutor(ThreadFactory)
+
+    static {
+        Method ofVirtual = null, name = null, factory = null, perTask = null;
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builder.getMethod("name", String.class, long.class);
+            factory = builder.getMethod("factory");
+            perTask = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            // preview builds throw here unless preview features are enabled
+            ofVirtual.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = name;
+        BUILDER_FACTORY = factory;
+        NEW_THREAD_PER_TASK = perTask;
+    }
+
+    private VirtualThreads() {}
+
+    /**
+     * @return true if the jdk supports virtual threads
+     */
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * executor starting a virtual thread per task, a bounded pool of platform threads if not supported
+     * @param name thread name prefix
+     * @param maxPlatformThreads size of the fallback pool
+     * @return ExecutorService
+     */
+    public static ExecutorService newExecutor(String name, int maxPlatformThreads) {
+        if (isSupported()) {
+            try {
+                Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), name + "-", 0L);
+                ThreadFactory factory = (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+                return (ExecutorService) NEW_THREAD_PER_TASK.invoke(null, factory);
+            } catch (ReflectiveOperationException e) {
+                // fall through to platform threads
+            }
+        }
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(maxPlatformThreads, maxPlatformThreads,
+                60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), daemonFactory(name));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * factory of named daemon platform threads
+     * @param name thread name
+     * @return ThreadFactory
+     */
+    static ThreadFactory daemonFactory(final String name) {
+        return r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
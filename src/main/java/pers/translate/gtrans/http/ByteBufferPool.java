@@ -0,0 +1,85 @@
+package pers.translate.gtrans.http;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Pool of fixed size ByteBuffers for encoding request bodies
+ * <p>
+ * Direct buffers are written to a socket channel without a copy into a temporary direct buffer,
+ * they pay off with the non-blocking client. Acquire never blocks, a new buffer is allocated when
+ * the pool is empty and a released buffer is dropped when the pool is full.
+ */
+public class ByteBufferPool {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+    private static final int DEFAULT_MAX_POOLED = 64;
+
+    private final int bufferSize;
+    private final boolean direct;
+    private final ArrayBlockingQueue<ByteBuffer> pooled;
+
+    /**
+     * Default constructor, heap buffers
+     */
+    public ByteBufferPool() {
+        this(false);
+    }
+
+    /**
+     * constructor with default sizes
+     * @param direct allocate direct buffers
+     */
+    public ByteBufferPool(boolean direct) {
+        this(DEFAULT_BUFFER_SIZE, DEFAULT_MAX_POOLED, direct);
+    }
+
+    /**
+     * constructor
+     * @param bufferSize size of every buffer, at least 64
+     * @param maxPooled max idle buffers kept
+     * @param direct allocate direct buffers
+     */
+    public ByteBufferPool(int bufferSize, int maxPooled, boolean direct) {
+        if (bufferSize < 64 || maxPooled < 1)
+            throw new IllegalArgumentException("bufferSize must be at least 64, maxPooled positive");
+        this.bufferSize = bufferSize;
+        this.direct = direct;
+        this.pooled = new ArrayBlockingQueue<>(maxPooled);
+    }
+
+    /**
+     * take a cleared buffer
+     * @return ByteBuffer
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = pooled.poll();
+        if (buffer == null)
+            return direct ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * give a buffer back, it must not be used afterwards
+     * @param buffer ByteBuffer from acquire
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer != null && buffer.capacity() == bufferSize && buffer.isDirect() == direct)
+            pooled.offer(buffer);
+    }
+
+    /**
+     * @return true if buffers are direct
+     */
+    public boolean isDirect() {
+        return direct;
+    }
+
+    /**
+     * @return number of idle buffers
+     */
+    public int getPooledCount() {
+        return pooled.size();
+    }
+}
@@ -0,0 +1,61 @@
+package pers.translate.gtrans.http;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * InputStream counting bytes read
+ */
+class CountingInputStream extends FilterInputStream {
+
+    private long count;
+
+    CountingInputStream(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1)
+            count++;
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0)
+            count += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        count += skipped;
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * read & drop the rest of stream
+     * @throws IOException read error
+     */
+    void skipRemaining() throws IOException {
+        byte[] buffer = new byte[4096];
+        while (read(buffer, 0, buffer.length) != -1) {}
+    }
+
+    /**
+     * @return bytes read so far
+     */
+    long getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,141 @@
+package pers.translate.gtrans.http;
+
+import java.util.Arrays;
+
+/**
+ * Hedged request policy of HttpClient4
+ * <p>
+ * When a request has not answered after the given percentile of recent latencies, one duplicate
+ * request is sent and the first response wins. No hedge is sent before minSamples latencies are known.
+ * Like the retry budget, every request deposits budgetRatio tokens (up to budgetCap) and every hedge
+ * withdraws one, so hedges stay at about budgetRatio of requests even when all of them are slow.
+ */
+public class HedgePolicy {
+
+    private static final double DEFAULT_PERCENTILE = 0.95;
+    private static final int DEFAULT_WINDOW = 256;
+    private static final int DEFAULT_MIN_SAMPLES = 20;
+    private static final long DEFAULT_MIN_DELAY_MILLIS = 10;
+    private static final double DEFAULT_BUDGET_RATIO = 0.1;
+    private static final double DEFAULT_BUDGET_CAP = 10;
+
+    private final double percentile;            // 0~1
+    private final int minSamples;
+    private final long minDelayMillis;          // never hedge earlier than this
+    private final double budgetRatio;           // tokens deposited per request
+    private final double budgetCap;             // max stored tokens
+
+    private final long[] window;                // ring buffer of latency millis, guarded by this
+    private int next;                           // guarded by this
+    private int samples;                        // guarded by this
+    private long cachedDelay = -1;              // guarded by this, -1 means recompute
+    private long hedgeCount;                    // guarded by this
+    private double budget;                      // guarded by this
+
+    /**
+     * Default constructor, hedge after p95 of last 256 latencies, hedges up to 10% of requests
+     */
+    public HedgePolicy() {
+        this(DEFAULT_PERCENTILE, DEFAULT_WINDOW, DEFAULT_MIN_SAMPLES, DEFAULT_MIN_DELAY_MILLIS);
+    }
+
+    /**
+     * constructor, hedges up to 10% of requests
+     * @param percentile latency percentile to wait before hedging, 0~1
+     * @param windowSize number of recent latencies kept
+     * @param minSamples latencies needed before hedging starts
+     * @param minDelayMillis min wait before hedging
+     */
+    public HedgePolicy(double percentile, int windowSize, int minSamples, long minDelayMillis) {
+        this(percentile, windowSize, minSamples, minDelayMillis, DEFAULT_BUDGET_RATIO, DEFAULT_BUDGET_CAP);
+    }
+
+    /**
+     * constructor
+     * @param percentile latency percentile to wait before hedging, 0~1
+     * @param windowSize number of recent latencies kept
+     * @param minSamples latencies needed before hedging starts
+     * @param minDelayMillis min wait before hedging
+     * @param budgetRatio hedge tokens deposited per request
+     * @param budgetCap max stored hedge tokens, the budget starts full
+     */
+    public HedgePolicy(double percentile, int windowSize, int minSamples, long minDelayMillis,
+                       double budgetRatio, double budgetCap) {
+        if (percentile <= 0 || percentile >= 1 || windowSize < 1 || minSamples < 1 || minDelayMillis < 0)
+            throw new IllegalArgumentException("need 0 < percentile < 1, positive windowSize & minSamples");
+        if (budgetRatio < 0 || budgetCap < 0)
+            throw new IllegalArgumentException("budgetRatio and budgetCap must not be negative");
+        this.percentile = percentile;
+        this.window = new long[windowSize];
+        this.minSamples = Math.min(minSamples, windowSize);
+        this.minDelayMillis = minDelayMillis;
+        this.budgetRatio = budgetRatio;
+        this.budgetCap = budgetCap;
+        this.budget = budgetCap;
+    }
+
+    /**
+     * record latency of a finished request
+     * @param latencyMillis latency
+     */
+    public synchronized void record(long latencyMillis) {
+        window[next] = latencyMillis;
+        next = (next + 1) % window.length;
+        if (samples < window.length)
+            samples++;
+        // recompute percentile every 1/16 window, sorting per request is too costly
+        if (next % Math.max(1, window.length / 16) == 0)
+            cachedDelay = -1;
+    }
+
+    /**
+     * get wait before sending a hedge
+     * @return millis, negative if not enough samples to hedge yet
+     */
+    public synchronized long hedgeDelayMillis() {
+        if (samples < minSamples)
+            return -1;
+        if (cachedDelay < 0) {
+            long[] sorted = Arrays.copyOf(window, samples);
+            Arrays.sort(sorted);
+            int index = Math.min(samples - 1, (int) Math.ceil(percentile * samples) - 1);
+            cachedDelay = Math.max(minDelayMillis, sorted[Math.max(0, index)]);
+        }
+        return cachedDelay;
+    }
+
+    /**
+     * deposit budget for a new request
+     */
+    public synchronized void onRequest() {
+        budget = Math.min(budgetCap, budget + budgetRatio);
+    }
+
+    /**
+     * withdraw budget for a hedge & count it
+     * @return false if budget is used up, don't hedge
+     */
+    public synchronized boolean tryHedge() {
+        if (budget < 1)
+            return false;
+        budget -= 1;
+        hedgeCount++;
+        return true;
+    }
+
+    /**
+     * get stored hedge tokens
+     * @return tokens
+     */
+    public synchronized double getBudget() {
+        return budget;
+    }
+
+    /**
+     * get number of hedges sent
+     * @return count
+     */
+    public synchronized long getHedgeCount() {
+        return hedgeCount;
+    }
+}
@@ -0,0 +1,264 @@
+package pers.translate.gtrans.http;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.reactor.IOReactorException;
+import pers.translate.gtrans.concurrent.InFlightRequests;
+import pers.translate.gtrans.metrics.Phase;
+import pers.translate.gtrans.metrics.TranslateMetrics;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-blocking HttpClient based on apache HttpAsyncClient 4.1
+ * <p>
+ * Close the client when it is no longer used, close waits for pending requests & then stops the
+ * io reactor.
+ */
+public class HttpAsyncClient4 implements AutoCloseable {
+
+    private static final int DEFAULT_POOL_MAX_CONNECTION = 200;
+    private static final int DEFAULT_POOL_MAX_PER_ROUTE = 200;
+
+    private static final int DEFAULT_CONNECTION_TIMEOUT = 5000;
+    private static final int DEFAULT_REQUEST_TIMEOUT = 5000;
+    private static final int DEFAULT_SOCKET_TIMEOUT = 10000;
+    private static final long DEFAULT_CLOSE_TIMEOUT = 10000;
+
+    private final CloseableHttpAsyncClient httpClient;
+    // request bodies go to the socket channel, direct buffers save a copy there
+    private final ByteBufferPool bufferPool = new ByteBufferPool(true);
+    private volatile TranslateMetrics metrics = TranslateMetrics.NOOP;
+    private final InFlightRequests inFlight = new InFlightRequests();
+
+    /**
+     * Default constructor
+     */
+    public HttpAsyncClient4() {
+        this(
+                HttpAsyncClient4.DEFAULT_POOL_MAX_CONNECTION,
+                HttpAsyncClient4.DEFAULT_POOL_MAX_PER_ROUTE,
+                HttpAsyncClient4.DEFAULT_CONNECTION_TIMEOUT,
+                HttpAsyncClient4.DEFAULT_REQUEST_TIMEOUT,
+                HttpAsyncClient4.DEFAULT_SOCKET_TIMEOUT
+        );
+    }
+
+    /**
+     * constructor
+     * @param poolMaxConnection Maximum number of connections
+     * @param poolMaxPerRoute Maximum number of connections per route
+     * @param connectionTimeout TCP connection timeout
+     * @param requestTimeout Timeout to get a connection from the pool
+     * @param socketTimeout Timeout between any two neighboring packets
+     */
+    public HttpAsyncClient4(
+            int poolMaxConnection,
+            int poolMaxPerRoute,
+            int connectionTimeout,
+            int requestTimeout,
+            int socketTimeout
+    ){
+        // build connection pool, a few io dispatch threads serve all connections
+        PoolingNHttpClientConnectionManager connectionManger;
+        try {
+            connectionManger = new PoolingNHttpClientConnectionManager(
+                    new DefaultConnectingIOReactor(IOReactorConfig.DEFAULT));
+        } catch (IOReactorException e) {
+            throw new IllegalStateException("can't start io reactor", e);
+        }
+        connectionManger.setMaxTotal(poolMaxConnection);
+        connectionManger.setDefaultMaxPerRoute(poolMaxPerRoute);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectionTimeout)
+                .setSocketTimeout(socketTimeout)
+                .setConnectionRequestTimeout(requestTimeout)
+                .build();
+
+        this.httpClient = HttpAsyncClients.custom()
+                .setConnectionManager(connectionManger)
+                .setDefaultRequestConfig(requestConfig)
+                .build();
+        this.httpClient.start();
+    }
+
+    /**
+     * Post Request with default header
+     * @param url url
+     * @param data post data
+     * @return future of Response with type String
+     */
+    public CompletableFuture<String> doPost(String url, ParamPairList data) {
+        return this.doPost(url, null, data);
+    }
+
+    /**
+     * Post Request
+     * @param url url
+     * @param headers headers
+     * @param data post data
+     * @return future of Response with type String, completes with null on non 200 response
+     */
+    public CompletableFuture<String> doPost(String url, Map<String, String> headers, ParamPairList data) {
+        return this.doPost(url, headers, data, ResponseParser.STRING);
+    }
+
+    /**
+     * Post Request, body of 200 response is parsed on the io thread
+     * @param url url
+     * @param headers headers
+     * @param data post data
+     * @param parser parser of 200 response body
+     * @param <T> result type
+     * @return future of parsed result, parser.onStatus on non 200 response
+     * @throws IllegalStateException client is closed
+     */
+    public <T> CompletableFuture<T> doPost(String url, Map<String, String> headers, ParamPairList data,
+                                           final ResponseParser<T> parser) {
+        if (!this.inFlight.tryEnter())
+            throw new IllegalStateException("client is closed");
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        future.whenComplete((result, error) -> inFlight.exit());
+        try {
+            execute(url, headers, data, parser, future);
+        } catch (RuntimeException e) {
+            // request wasn't sent, leave in-flight requests
+            future.completeExceptionally(e);
+            throw e;
+        }
+        return future;
+    }
+
+    /**
+     * send Post Request
+     * @param url url
+     * @param headers headers
+     * @param data post data
+     * @param parser parser of 200 response body
+     * @param future completed with parsed result
+     */
+    private <T> void execute(String url, Map<String, String> headers, ParamPairList data,
+                             final ResponseParser<T> parser, final CompletableFuture<T> future) {
+        HttpPost httpPost = new HttpPost(url);
+        // set headers
+        if (headers != null)
+            for (Map.Entry<String, String> entry : headers.entrySet())
+                httpPost.addHeader(entry.getKey(), entry.getValue());
+        // set data
+        if (data != null) {
+            HttpEntity entity = new UrlEncodedEntity(data, this.bufferPool);
+            httpPost.setEntity(entity);
+            this.metrics.recordRequestBytes(entity.getContentLength());
+        }
+
+        final long start = System.nanoTime();
+        httpClient.execute(httpPost, new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                // the async client has buffered the whole body already
+                metrics.recordLatency(Phase.NETWORK, System.nanoTime() - start);
+                if (response != null && response.getStatusLine() != null)
+                    metrics.recordStatus(response.getStatusLine().getStatusCode());
+                try {
+                    future.complete(parseResponse(response, parser));
+                } catch (IOException | RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void failed(Exception e) {
+                metrics.recordStatus(-1);
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void cancelled() {
+                future.cancel(false);
+            }
+        });
+    }
+
+    /**
+     * parse response
+     * @param response response
+     * @param parser parser of 200 response body
+     * @return parsed result, parser.onStatus on non 200 response
+     * @throws IOException parse error
+     */
+    private <T> T parseResponse(HttpResponse response, ResponseParser<T> parser) throws IOException {
+        if (response == null || response.getStatusLine() == null)
+            return null;
+
+        // check Http Code
+        int statusCode = response.getStatusLine().getStatusCode();
+        if (statusCode != HttpStatus.SC_OK)
+            return parser.onStatus(statusCode);
+        HttpEntity entityRes = response.getEntity();
+        if (entityRes != null) {
+            // body is buffered already, parse it without an intermediate String
+            try (CountingInputStream content = new CountingInputStream(entityRes.getContent())) {
+                T result = parser.parse(content);
+                this.metrics.recordResponseBytes(Math.max(content.getCount(), entityRes.getContentLength()));
+                return result;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * set metrics listener
+     * @param metrics TranslateMetrics, null to disable
+     */
+    public void setMetrics(TranslateMetrics metrics) {
+        this.metrics = metrics == null ? TranslateMetrics.NOOP : metrics;
+    }
+
+    /**
+     * close client, waits up to 10 seconds for pending requests
+     */
+    @Override
+    public void close() {
+        close(DEFAULT_CLOSE_TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * close client: stop accepting requests, wait for pending ones, then stop the io reactor
+     * @param timeout max time to wait for pending requests
+     * @param unit unit of timeout
+     * @return true if all pending requests completed in time
+     */
+    public boolean close(long timeout, TimeUnit unit) {
+        boolean drained = false;
+        try {
+            drained = this.inFlight.closeAndAwait(timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            // requests still pending are cancelled
+            this.httpClient.close();
+        } catch (IOException ignored) {}
+        return drained;
+    }
+
+    /**
+     * client shutdown, same as close
+     */
+    public void shutdown() {
+        close();
+    }
+}
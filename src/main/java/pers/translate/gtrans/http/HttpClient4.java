@@ -1,60 +1,108 @@
 package pers.translate.gtrans.http;
 
+import org.apache.http.HttpClientConnection;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
 import org.apache.http.HttpStatus;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.config.RequestConfig;
-import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.client.utils.URIUtils;
 import org.apache.http.config.Registry;
 import org.apache.http.config.RegistryBuilder;
-import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
 import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
 import org.apache.http.util.EntityUtils;
+import pers.translate.gtrans.concurrent.ExecutionMode;
+import pers.translate.gtrans.concurrent.InFlightRequests;
+import pers.translate.gtrans.limit.RateLimiter;
+import pers.translate.gtrans.limit.RateLimiterMetrics;
+import pers.translate.gtrans.metrics.Phase;
+import pers.translate.gtrans.metrics.TranslateMetrics;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.UnsupportedEncodingException;
+import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.function.UnaryOperator;
 
 /**
  * HttpClient based on apache HttpClient 4.5
+ * <p>
+ * Close the client when it is no longer used, close waits for running requests & then closes all
+ * connections. Idle connections of all clients are checked by one shared monitor thread.
  */
-public class HttpClient4 {
+public class HttpClient4 implements AutoCloseable {
 
     private static final int DEFAULT_POOL_MAX_CONNECTION = 200;
     private static final int DEFAULT_POOL_MAX_PER_ROUTE = 200;
 
     private static final int DEFAULT_CONNECTION_TIMEOUT = 5000;
-    private static final int DEFAULT_REQUEST_TIMEOUT = 500;
+    private static final int DEFAULT_REQUEST_TIMEOUT = 5000;
     private static final int DEFAULT_SOCKET_TIMEOUT = 10000;
+    private static final long DEFAULT_CLOSE_TIMEOUT = 10000;
+    private static final long DEFAULT_KEEP_ALIVE = 30000;
+    private static final int DEFAULT_VALIDATE_AFTER_INACTIVITY = 2000;
 
     private final CloseableHttpClient httpClient;
-    private final IdleConnectionMonitorThread idleThread;
+    private final Transport transport;            // sends requests, the pooled httpClient by default
+    private final PoolingHttpClientConnectionManager connectionManager;
+    // gates in front of the pool: its lease is a synchronized block, which pins a waiting virtual thread
+    private final Semaphore connectionPermits;                      // max connections
+    private final int maxConnections;
+    private final ConcurrentHashMap<HttpHost, Semaphore> routePermits; // null if route limit >= max connections
+    private final int connectionLimit;                              // max connections of one route
+    private final int connectionTimeout;
+    private final int requestTimeout;
+    private final long keepAlive;
+    private final ByteBufferPool bufferPool = new ByteBufferPool();   // request body encoding
+    private volatile TranslateMetrics metrics = TranslateMetrics.NOOP;
+    private final ScheduledFuture<?> idleMonitor;
+    private final InFlightRequests inFlight = new InFlightRequests();
+    private volatile RateLimiter rateLimiter;     // null means unlimited
+    private volatile RetryPolicy retryPolicy;     // null means no retry
+    private volatile HedgePolicy hedgePolicy;     // null means no hedged request
+    private ExecutorService hedgeExecutor;        // runs hedged requests, created on first use
+    private ExecutionMode executionMode = ExecutionMode.PLATFORM;
 
     /**
      * Default constructor
      */
     public HttpClient4() {
-        this(
-                HttpClient4.DEFAULT_POOL_MAX_CONNECTION,
-                HttpClient4.DEFAULT_POOL_MAX_PER_ROUTE,
-                HttpClient4.DEFAULT_CONNECTION_TIMEOUT,
-                HttpClient4.DEFAULT_REQUEST_TIMEOUT,
-                HttpClient4.DEFAULT_SOCKET_TIMEOUT
-        );
+        this(custom());
     }
 
     /**
@@ -72,6 +120,19 @@ public class HttpClient4 {
             int requestTimeout,
             int socketTimeout
     ){
+        this(custom()
+                .setPoolMaxConnection(poolMaxConnection)
+                .setPoolMaxPerRoute(poolMaxPerRoute)
+                .setConnectionTimeout(connectionTimeout)
+                .setRequestTimeout(requestTimeout)
+                .setSocketTimeout(socketTimeout));
+    }
+
+    /**
+     * constructor, for subclasses, others use Builder.build
+     * @param builder pool & timeout settings
+     */
+    protected HttpClient4(Builder builder) {
         // build connection pool
         Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory>create()
                 .register("http", PlainConnectionSocketFactory.getSocketFactory())
@@ -79,24 +140,56 @@ public class HttpClient4 {
                 .build();
 
         PoolingHttpClientConnectionManager connectionManger = new PoolingHttpClientConnectionManager(registry);
-        connectionManger.setMaxTotal(poolMaxConnection);
-        connectionManger.setDefaultMaxPerRoute(poolMaxPerRoute);
+        connectionManger.setMaxTotal(builder.poolMaxConnection);
+        connectionManger.setDefaultMaxPerRoute(builder.poolMaxPerRoute);
+        connectionManger.setValidateAfterInactivity(builder.validateAfterInactivity);
 
         RequestConfig requestConfig = RequestConfig.custom()
-                .setConnectTimeout(connectionTimeout)
-                .setSocketTimeout(socketTimeout)
-                .setConnectionRequestTimeout(requestTimeout)
+                .setConnectTimeout(builder.connectionTimeout)
+                .setSocketTimeout(builder.socketTimeout)
+                .setConnectionRequestTimeout(builder.requestTimeout)
                 .build();
 
+        final long keepAlive = builder.keepAlive;
+        ConnectionKeepAliveStrategy keepAliveStrategy = builder.keepAliveStrategy;
+        if (keepAliveStrategy == null) {
+            // keep a connection as long as the server allows, at most keepAlive
+            keepAliveStrategy = (response, context) -> {
+                long allowed = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                return allowed > 0 ? Math.min(allowed, keepAlive) : keepAlive;
+            };
+        }
+
         HttpClientBuilder httpClientBuilder = HttpClients.custom();
         this.httpClient = httpClientBuilder
                 .setConnectionManager(connectionManger)
                 .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy(keepAliveStrategy)
                 .build();
 
-        // start monitor
-        this.idleThread = new IdleConnectionMonitorThread(connectionManger);
-        this.idleThread.start();
+        Transport pooled = this.httpClient::execute;
+        this.transport = builder.transport == null ? pooled : builder.transport.apply(pooled);
+        this.connectionManager = connectionManger;
+        // a request past either limit would wait in the pool
+        this.connectionLimit = Math.min(builder.poolMaxConnection, builder.poolMaxPerRoute);
+        this.maxConnections = builder.poolMaxConnection;
+        this.connectionPermits = new Semaphore(this.maxConnections, true);
+        this.routePermits = builder.poolMaxPerRoute < builder.poolMaxConnection ? new ConcurrentHashMap<>() : null;
+        this.connectionTimeout = builder.connectionTimeout;
+        this.requestTimeout = builder.requestTimeout;
+        this.keepAlive = keepAlive;
+
+        // start monitor, a custom strategy decides expiry on its own
+        this.idleMonitor = IdleConnectionMonitor.watch(connectionManger,
+                builder.keepAliveStrategy == null ? keepAlive : 0);
+    }
+
+    /**
+     * builder of a client with custom pool & timeout settings
+     * @return Builder with default settings
+     */
+    public static Builder custom() {
+        return new Builder();
     }
 
     /**
@@ -125,17 +218,21 @@ public class HttpClient4 {
      * @param params params with type ParamPairList
      * @return Response with type String
      */
-    public String doGet(String url, Map<String, String> headers, ParamPairList params) throws IOException {
-
-        HttpGet httpGet = new HttpGet(getUrlWithParams(url, params));
-        // set header
-        if ( headers != null )
-            for (Map.Entry<String, String> entry : headers.entrySet())
-                httpGet.addHeader(entry.getKey(), entry.getValue());
+    public String doGet(String url, final Map<String, String> headers, ParamPairList params) throws IOException {
+
+        final String finalUrl = getUrlWithParams(url, params);
+        // every attempt needs its own request object
+        Supplier<HttpRequestBase> request = () -> {
+            HttpGet httpGet = new HttpGet(finalUrl);
+            // set header
+            if ( headers != null )
+                for (Map.Entry<String, String> entry : headers.entrySet())
+                    httpGet.addHeader(entry.getKey(), entry.getValue());
+            return httpGet;
+        };
 
         // get response
-        CloseableHttpResponse response = httpClient.execute(httpGet);
-        return parseResponse(response);
+        return execute(request, 0, ResponseParser.STRING);
     }
 
     /**
@@ -176,43 +273,419 @@ public class HttpClient4 {
      * @param data post date
      * @return Response with type String
      */
-    public String doPost(String url, Map<String, String> headers, ParamPairList params, ParamPairList data)
+    public String doPost(String url, final Map<String, String> headers, ParamPairList params, ParamPairList data)
             throws IOException {
+        return this.doPost(url, headers, params, data, ResponseParser.STRING);
+    }
 
-        HttpPost httpPost = new HttpPost(getUrlWithParams(url, params));
-        // set headers
-        if (headers != null)
-            for (Map.Entry<String, String> entry : headers.entrySet())
-                httpPost.addHeader(entry.getKey(), entry.getValue());
-        // set data
-        if (data != null)
-            httpPost.setEntity(getUrlEncodedFormEntity(data));
+    /**
+     * Post Request, body of 200 response is parsed while it is read
+     * @param url url
+     * @param headers headers
+     * @param params url params
+     * @param data post date
+     * @param parser parser of 200 response body
+     * @param <T> result type
+     * @return parsed result, parser.onStatus on non 200 response
+     */
+    public <T> T doPost(String url, final Map<String, String> headers, ParamPairList params, ParamPairList data,
+                        ResponseParser<T> parser) throws IOException {
+
+        final String finalUrl = getUrlWithParams(url, params);
+        // the form entity is repeatable, all attempts share it
+        final HttpEntity entity = data == null ? null : getUrlEncodedFormEntity(data);
+        Supplier<HttpRequestBase> request = () -> {
+            HttpPost httpPost = new HttpPost(finalUrl);
+            // set headers
+            if (headers != null)
+                for (Map.Entry<String, String> entry : headers.entrySet())
+                    httpPost.addHeader(entry.getKey(), entry.getValue());
+            // set data
+            if (entity != null)
+                httpPost.setEntity(entity);
+            return httpPost;
+        };
 
         // get response
-        CloseableHttpResponse response = httpClient.execute(httpPost);
-        return parseResponse(response);
+        return execute(request, entity == null ? 0 : entity.getContentLength(), parser);
+    }
+
+    /**
+     * execute request while the client is open
+     * @param request builds a new request for every attempt
+     * @param bodyBytes request body size
+     * @param parser parser of 200 response body
+     * @return parsed result, parser.onStatus on non 200 response
+     * @throws IOException http request error
+     * @throws IllegalStateException client is closed
+     */
+    private <T> T execute(Supplier<HttpRequestBase> request, long bodyBytes, ResponseParser<T> parser)
+            throws IOException {
+        if (!this.inFlight.tryEnter())
+            throw new IllegalStateException("client is closed");
+        try {
+            return executeWithRetry(request, bodyBytes, parser);
+        } finally {
+            this.inFlight.exit();
+        }
+    }
+
+    /**
+     * execute request, retry on retryable failure
+     * @param request builds a new request for every attempt
+     * @param bodyBytes request body size
+     * @param parser parser of 200 response body
+     * @return parsed result, parser.onStatus on non 200 response
+     * @throws IOException http request error
+     */
+    private <T> T executeWithRetry(Supplier<HttpRequestBase> request, long bodyBytes, ResponseParser<T> parser)
+            throws IOException {
+        RetryPolicy retry = this.retryPolicy;
+        if (retry != null)
+            retry.onRequest();
+
+        for (int attempt = 1; ; attempt++) {
+            HttpResult<T> result = null;
+            IOException error = null;
+            try {
+                result = executeHedged(request, bodyBytes, parser);
+            } catch (IOException e) {
+                error = e;
+            }
+
+            boolean retryable = retry != null && attempt < retry.getMaxAttempts()
+                    && (error != null ? retry.isRetryable(error) : retry.isRetryable(result.statusCode));
+            if (!retryable || !retry.tryRetry()) {
+                if (error != null)
+                    throw error;
+                return result.statusCode == HttpStatus.SC_OK || result.statusCode < 0 ? result.body
+                        : parser.onStatus(result.statusCode);
+            }
+
+            try {
+                Thread.sleep(retry.backoffMillis(attempt - 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting retry");
+            }
+        }
+    }
+
+    /**
+     * execute request, send a duplicate when it is slower than the hedge delay, first response wins
+     * @param request builds a new request for every attempt
+     * @param bodyBytes request body size
+     * @param parser parser of 200 response body
+     * @return HttpResult
+     * @throws IOException http request error
+     */
+    private <T> HttpResult<T> executeHedged(Supplier<HttpRequestBase> request, long bodyBytes,
+                                            ResponseParser<T> parser) throws IOException {
+        HedgePolicy hedge = this.hedgePolicy;
+        if (hedge != null)
+            hedge.onRequest();
+        long delay = hedge == null ? -1 : hedge.hedgeDelayMillis();
+        long start = System.nanoTime();
+        if (delay < 0) {
+            HttpResult<T> result = executeOnce(request.get(), bodyBytes, parser);
+            if (hedge != null && result.statusCode == HttpStatus.SC_OK)
+                hedge.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return result;
+        }
+
+        CompletionService<HttpResult<T>> completion = new ExecutorCompletionService<>(getHedgeExecutor());
+        final HttpRequestBase primary = request.get();
+        HttpRequestBase backup = null;
+        completion.submit(() -> executeOnce(primary, bodyBytes, parser));
+        int pending = 1;
+        try {
+            Future<HttpResult<T>> done = completion.poll(delay, TimeUnit.MILLISECONDS);
+            if (done == null) {
+                // with the hedge budget used up keep waiting for the first request only
+                if (hedge.tryHedge()) {
+                    final HttpRequestBase hedged = backup = request.get();
+                    completion.submit(() -> executeOnce(hedged, bodyBytes, parser));
+                    pending++;
+                }
+                done = completion.take();
+            }
+
+            // take first success, else the last failure
+            while (true) {
+                pending--;
+                try {
+                    HttpResult<T> result = done.get();
+                    if (result.statusCode == HttpStatus.SC_OK || pending == 0) {
+                        if (result.statusCode == HttpStatus.SC_OK)
+                            hedge.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                        return result;
+                    }
+                } catch (ExecutionException e) {
+                    if (pending == 0) {
+                        if (e.getCause() instanceof IOException)
+                            throw (IOException) e.getCause();
+                        throw new IOException(e.getCause());
+                    }
+                }
+                done = completion.take();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting hedged request");
+        } finally {
+            // cancel the loser, a finished request ignores abort
+            primary.abort();
+            if (backup != null)
+                backup.abort();
+        }
+    }
+
+    /**
+     * execute request once through rate limiter
+     * @param request request
+     * @param bodyBytes request body size
+     * @param parser parser of 200 response body
+     * @return HttpResult
+     * @throws IOException http request error
+     */
+    private <T> HttpResult<T> executeOnce(HttpRequestBase request, long bodyBytes, ResponseParser<T> parser)
+            throws IOException {
+        RateLimiter limiter = this.rateLimiter;
+        RateLimiter.Permit permit = limiter == null ? null : limiter.acquire(bodyBytes);
+        TranslateMetrics metrics = this.metrics;
+        metrics.recordRequestBytes(bodyBytes);
+        int statusCode = -1;
+        try {
+            Semaphore routePermits = acquireConnectionPermit(request, metrics);
+            try {
+                long start = System.nanoTime();
+                CloseableHttpResponse response = transport.execute(request);
+                metrics.recordLatency(Phase.NETWORK, System.nanoTime() - start);
+                if (response != null && response.getStatusLine() != null)
+                    statusCode = response.getStatusLine().getStatusCode();
+                return new HttpResult<>(statusCode, parseResponse(response, parser));
+            } finally {
+                // response is consumed, its connection is back in the pool
+                this.connectionPermits.release();
+                if (routePermits != null)
+                    routePermits.release();
+            }
+        } finally {
+            metrics.recordStatus(statusCode);
+            if (permit != null)
+                // an aborted hedge says nothing about server load
+                permit.release(request.isAborted() && statusCode < 0 ? 0 : statusCode);
+        }
+    }
+
+    /**
+     * wait for a free connection of the route & of the pool, the pool itself then leases without waiting
+     * @param request request
+     * @param metrics metrics listener
+     * @return permits of route to release, null if routes aren't limited below the pool size
+     * @throws IOException no connection within request timeout / interrupted
+     */
+    private Semaphore acquireConnectionPermit(HttpRequestBase request, TranslateMetrics metrics) throws IOException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(this.requestTimeout);
+        Semaphore routePermits = null;
+        try {
+            if (this.routePermits != null) {
+                HttpHost target = URIUtils.extractHost(request.getURI());
+                if (target != null) {
+                    routePermits = this.routePermits.computeIfAbsent(target,
+                            k -> new Semaphore(this.connectionLimit, true));
+                    acquire(routePermits, deadline);
+                }
+            }
+            try {
+                acquire(this.connectionPermits, deadline);
+            } catch (IOException e) {
+                if (routePermits != null)
+                    routePermits.release();
+                throw e;
+            }
+            return routePermits;
+        } finally {
+            metrics.recordLatency(Phase.POOL_LEASE, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * acquire a permit before deadline, or without limit if request timeout isn't positive
+     * @param permits permits
+     * @param deadline System.nanoTime deadline
+     * @throws IOException no permit before deadline / interrupted
+     */
+    private void acquire(Semaphore permits, long deadline) throws IOException {
+        try {
+            if (this.requestTimeout > 0) {
+                if (!permits.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS))
+                    throw new ConnectionPoolTimeoutException("Timeout waiting for connection from pool");
+            } else {
+                permits.acquire();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting connection");
+        }
+    }
+
+    /**
+     * get executor of hedged requests, create it on first use
+     * @return ExecutorService
+     */
+    private synchronized ExecutorService getHedgeExecutor() {
+        if (this.hedgeExecutor == null) {
+            // a hedged request holds a connection, more of them would only wait for one
+            this.hedgeExecutor = this.executionMode.newExecutor("gtrans-hedge", this.maxConnections);
+        }
+        return this.hedgeExecutor;
+    }
+
+    /**
+     * set kind of threads running hedged requests
+     * @param executionMode ExecutionMode
+     */
+    public synchronized void setExecutionMode(ExecutionMode executionMode) {
+        if (this.hedgeExecutor != null)
+            this.hedgeExecutor.shutdown();
+        this.hedgeExecutor = null;
+        this.executionMode = executionMode;
+    }
+
+    /**
+     * set metrics listener, also registers pool & rate limiter gauges
+     * @param metrics TranslateMetrics, null to disable
+     */
+    public void setMetrics(TranslateMetrics metrics) {
+        TranslateMetrics listener = metrics == null ? TranslateMetrics.NOOP : metrics;
+        this.metrics = listener;
+        final PoolingHttpClientConnectionManager pool = this.connectionManager;
+        listener.registerGauge("pool.leased", () -> pool.getTotalStats().getLeased());
+        listener.registerGauge("pool.available", () -> pool.getTotalStats().getAvailable());
+        // callers wait in front of the pool, it never sees them pending
+        listener.registerGauge("pool.pending", () -> pool.getTotalStats().getPending() + waitingForConnection());
+        listener.registerGauge("pool.max", () -> pool.getTotalStats().getMax());
+        // rate limiter may be set or replaced later, 0 while there is none
+        listener.registerGauge("limiter.limit", () -> rateLimiterGauge(RateLimiterMetrics::getConcurrencyLimit));
+        listener.registerGauge("limiter.inflight", () -> rateLimiterGauge(RateLimiterMetrics::getInFlight));
+        listener.registerGauge("limiter.throttled", () -> rateLimiterGauge(RateLimiterMetrics::getThrottledCount));
+        listener.registerGauge("limiter.overloads", () -> rateLimiterGauge(RateLimiterMetrics::getOverloadCount));
+    }
+
+    /**
+     * read a value of current rate limiter state
+     * @param value reads the value from RateLimiterMetrics
+     * @return value, 0 if no rate limiter is set
+     */
+    private long rateLimiterGauge(ToLongFunction<RateLimiterMetrics> value) {
+        RateLimiter limiter = this.rateLimiter;
+        return limiter == null ? 0 : value.applyAsLong(limiter.metrics());
+    }
+
+    /**
+     * get connection pool state
+     * @return PoolStats of all routes, pending counts callers waiting for a connection
+     */
+    public PoolStats getPoolStats() {
+        PoolStats stats = this.connectionManager.getTotalStats();
+        return new PoolStats(stats.getLeased(), stats.getPending() + waitingForConnection(), stats.getAvailable(),
+                stats.getMax());
+    }
+
+    /**
+     * @return callers waiting for a connection permit of a route or of the pool
+     */
+    private int waitingForConnection() {
+        int waiting = this.connectionPermits.getQueueLength();
+        if (this.routePermits != null)
+            for (Semaphore permits : this.routePermits.values())
+                waiting += permits.getQueueLength();
+        return waiting;
+    }
+
+    /**
+     * set retry policy
+     * @param retryPolicy RetryPolicy, null to disable retry
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * get retry policy
+     * @return RetryPolicy, null if disabled
+     */
+    public RetryPolicy getRetryPolicy() {
+        return this.retryPolicy;
+    }
+
+    /**
+     * set hedged request policy
+     * @param hedgePolicy HedgePolicy, null to disable hedged requests
+     */
+    public void setHedgePolicy(HedgePolicy hedgePolicy) {
+        this.hedgePolicy = hedgePolicy;
+    }
+
+    /**
+     * get hedged request policy
+     * @return HedgePolicy, null if disabled
+     */
+    public HedgePolicy getHedgePolicy() {
+        return this.hedgePolicy;
+    }
+
+    /**
+     * set rate limiter in front of every request
+     * @param rateLimiter RateLimiter, null to disable
+     */
+    public void setRateLimiter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * get rate limiter
+     * @return RateLimiter, null if disabled
+     */
+    public RateLimiter getRateLimiter() {
+        return this.rateLimiter;
     }
 
     /**
      * parse response
      * @param response response
-     * @return response to str
+     * @param parser parser of 200 response body
+     * @return parsed result, null on non 200 response
      * @throws IOException parse error
      */
-    private String parseResponse(CloseableHttpResponse response) throws IOException {
+    private <T> T parseResponse(CloseableHttpResponse response, ResponseParser<T> parser) throws IOException {
+        if (response == null)
+            return null;
+        HttpEntity entityRes = response.getEntity();
         try {
-            if (response == null || response.getStatusLine() == null)
+            if (response.getStatusLine() == null)
                 return null;
 
             // check Http Code
             int statusCode = response.getStatusLine().getStatusCode();
-            if ( statusCode == HttpStatus.SC_OK ) {
-                HttpEntity entityRes = response.getEntity();
-                if (entityRes != null)
-                    return EntityUtils.toString(entityRes, "UTF-8");
+            if ( statusCode == HttpStatus.SC_OK && entityRes != null ) {
+                long start = System.nanoTime();
+                CountingInputStream content = new CountingInputStream(entityRes.getContent());
+                T result = parser.parse(content);
+                this.metrics.recordLatency(Phase.RESPONSE_READ, System.nanoTime() - start);
+                // skip what the parser left, so the connection goes back to the pool
+                content.skipRemaining();
+                this.metrics.recordResponseBytes(content.getCount());
+                return result;
             }
         } finally {
-            if ( response != null ) {
+            try {
+                // an unread error body must be consumed as well to reuse the connection
+                EntityUtils.consume(entityRes);
+            } catch (IOException ignored) {
+            } finally {
                 try {
                     response.close();
                 } catch (IOException ignored) {}
@@ -226,8 +699,8 @@ public class HttpClient4 {
      * @param data Map data
      * @return HttpEntity result
      */
-    private HttpEntity getUrlEncodedFormEntity(ParamPairList data) {
-        return new UrlEncodedFormEntity(data.getPairList(), StandardCharsets.UTF_8);
+    HttpEntity getUrlEncodedFormEntity(ParamPairList data) {
+        return new UrlEncodedEntity(data, this.bufferPool);
     }
 
     /**
@@ -255,50 +728,260 @@ public class HttpClient4 {
     }
 
     /**
-     * client shutdown
+     * close client, waits up to 10 seconds for running requests
      */
-    public void shutdown() {
-        this.idleThread.shutdown();
+    @Override
+    public void close() {
+        close(DEFAULT_CLOSE_TIMEOUT, TimeUnit.MILLISECONDS);
     }
 
     /**
-     * Monitor abnormal links
+     * close client: stop accepting requests, wait for running ones, then close all connections
+     * @param timeout max time to wait for running requests
+     * @param unit unit of timeout
+     * @return true if all running requests finished in time
      */
-    private static class IdleConnectionMonitorThread extends Thread {
-
-        private final HttpClientConnectionManager connMgr;
-        private volatile boolean exitFlag = false;
-
-        public IdleConnectionMonitorThread(HttpClientConnectionManager connMgr) {
-            this.connMgr = connMgr;
-            setDaemon(true);
+    public boolean close(long timeout, TimeUnit unit) {
+        boolean drained = false;
+        try {
+            drained = this.inFlight.closeAndAwait(timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        IdleConnectionMonitor.unwatch(this.idleMonitor);
+        synchronized (this) {
+            if (this.hedgeExecutor != null)
+                this.hedgeExecutor.shutdownNow();
         }
+        try {
+            // closes the pool as well, requests still running fail
+            this.httpClient.close();
+        } catch (IOException ignored) {}
+        return drained;
+    }
+
+    /**
+     * client shutdown, same as close
+     */
+    public void shutdown() {
+        close();
+    }
 
-        @Override
-        public void run() {
-            while (!this.exitFlag) {
-                synchronized (this) {
+    /**
+     * open connections to the host of url ahead of the first requests, so they don't pay for tcp &
+     * tls handshakes; connections go to the pool idle
+     * @param url any url of the host
+     * @param connections number of connections to open, at most the pool size of one route
+     * @return number of open connections put back to the pool, failures are skipped
+     */
+    public int warmUp(String url, int connections) {
+        URI uri = URI.create(url);
+        HttpHost target = URIUtils.extractHost(uri);
+        if (target == null)
+            throw new IllegalArgumentException("url has no host: " + url);
+        boolean secure = "https".equalsIgnoreCase(target.getSchemeName());
+        int port = target.getPort() > 0 ? target.getPort() : secure ? 443 : 80;
+        // same route as the client plans for a request without proxy
+        final HttpRoute route = new HttpRoute(new HttpHost(target.getHostName(), port, target.getSchemeName()),
+                null, secure);
+
+        int count = Math.min(connections, this.connectionLimit);
+        if (count <= 0)
+            return 0;
+        ExecutorService executor = this.executionMode.newExecutor("gtrans-warm-up", count);
+        List<HttpClientConnection> opened = new ArrayList<>(count);
+        boolean interrupted = false;
+        try {
+            // lease all first, else a released connection would be leased & connected again
+            List<Future<HttpClientConnection>> leased = new ArrayList<>(count);
+            for (int i = 0; i < count; i++)
+                leased.add(executor.submit(() -> leaseAndConnect(route)));
+            // every lease ends within request & connection timeout, wait for all to release them
+            for (Future<HttpClientConnection> future : leased) {
+                while (true) {
                     try {
-                        this.wait(2000);
+                        opened.add(future.get());
+                        break;
                     } catch (InterruptedException e) {
-                        e.printStackTrace();
+                        interrupted = true;
+                    } catch (ExecutionException e) {
+                        // best effort, a request opens the connection itself
+                        break;
                     }
                 }
-                // release unavailable connection
-                connMgr.closeExpiredConnections();
-                // Close inactive connections within 30 seconds
-                connMgr.closeIdleConnections(30, TimeUnit.SECONDS);
             }
+        } finally {
+            executor.shutdown();
+            for (HttpClientConnection conn : opened)
+                this.connectionManager.releaseConnection(conn, null, this.keepAlive, TimeUnit.MILLISECONDS);
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+        return opened.size();
+    }
+
+    /**
+     * lease a new connection of route from the pool & connect it
+     * @param route route
+     * @return connected connection, still leased
+     * @throws Exception lease / connect error
+     */
+    private HttpClientConnection leaseAndConnect(HttpRoute route) throws Exception {
+        ConnectionRequest request = this.connectionManager.requestConnection(route, null);
+        HttpClientConnection conn = request.get(this.requestTimeout, TimeUnit.MILLISECONDS);
+        try {
+            if (!conn.isOpen()) {
+                HttpClientContext context = HttpClientContext.create();
+                this.connectionManager.connect(conn, route, this.connectionTimeout, context);
+                this.connectionManager.routeComplete(conn, route, context);
+            }
+            return conn;
+        } catch (Exception e) {
+            this.connectionManager.releaseConnection(conn, null, 0, TimeUnit.MILLISECONDS);
+            throw e;
+        }
+    }
+
+    /**
+     * Builder of HttpClient4
+     */
+    public static class Builder {
+
+        private int poolMaxConnection = DEFAULT_POOL_MAX_CONNECTION;
+        private int poolMaxPerRoute = DEFAULT_POOL_MAX_PER_ROUTE;
+        private int connectionTimeout = DEFAULT_CONNECTION_TIMEOUT;
+        private int requestTimeout = DEFAULT_REQUEST_TIMEOUT;
+        private int socketTimeout = DEFAULT_SOCKET_TIMEOUT;
+        private long keepAlive = DEFAULT_KEEP_ALIVE;
+        private ConnectionKeepAliveStrategy keepAliveStrategy;
+        private int validateAfterInactivity = DEFAULT_VALIDATE_AFTER_INACTIVITY;
+        private String warmUpUrl;
+        private int warmUpConnections;
+        private UnaryOperator<Transport> transport;
+
+        Builder() {}
+
+        /**
+         * @param poolMaxConnection Maximum number of connections
+         * @return this
+         */
+        public Builder setPoolMaxConnection(int poolMaxConnection) {
+            if (poolMaxConnection < 1)
+                throw new IllegalArgumentException("poolMaxConnection must be positive");
+            this.poolMaxConnection = poolMaxConnection;
+            return this;
         }
 
         /**
-         * monitor shutdown
+         * @param poolMaxPerRoute Maximum number of connections per route
+         * @return this
          */
-        public void shutdown() {
-            this.exitFlag = true;
-            synchronized (this) {
-                notify();
-            }
+        public Builder setPoolMaxPerRoute(int poolMaxPerRoute) {
+            if (poolMaxPerRoute < 1)
+                throw new IllegalArgumentException("poolMaxPerRoute must be positive");
+            this.poolMaxPerRoute = poolMaxPerRoute;
+            return this;
+        }
+
+        /**
+         * @param connectionTimeout TCP connection timeout in ms
+         * @return this
+         */
+        public Builder setConnectionTimeout(int connectionTimeout) {
+            this.connectionTimeout = connectionTimeout;
+            return this;
+        }
+
+        /**
+         * @param requestTimeout Timeout to get a connection from the pool in ms, 0 waits forever
+         * @return this
+         */
+        public Builder setRequestTimeout(int requestTimeout) {
+            this.requestTimeout = requestTimeout;
+            return this;
+        }
+
+        /**
+         * @param socketTimeout Timeout between any two neighboring packets in ms
+         * @return this
+         */
+        public Builder setSocketTimeout(int socketTimeout) {
+            this.socketTimeout = socketTimeout;
+            return this;
+        }
+
+        /**
+         * @param keepAlive max time in ms an idle connection is kept, a shorter time sent by server wins
+         * @return this
+         */
+        public Builder setKeepAlive(long keepAlive) {
+            this.keepAlive = keepAlive;
+            return this;
+        }
+
+        /**
+         * @param keepAliveStrategy custom keep alive strategy, replaces setKeepAlive
+         * @return this
+         */
+        public Builder setKeepAliveStrategy(ConnectionKeepAliveStrategy keepAliveStrategy) {
+            this.keepAliveStrategy = keepAliveStrategy;
+            return this;
+        }
+
+        /**
+         * @param validateAfterInactivity a connection idle longer (in ms) is checked before it is reused
+         * @return this
+         */
+        public Builder setValidateAfterInactivity(int validateAfterInactivity) {
+            this.validateAfterInactivity = validateAfterInactivity;
+            return this;
+        }
+
+        /**
+         * open connections when the client is built, see HttpClient4.warmUp
+         * @param url any url of the host
+         * @param connections number of connections to open
+         * @return this
+         */
+        public Builder setWarmUp(String url, int connections) {
+            this.warmUpUrl = url;
+            this.warmUpConnections = connections;
+            return this;
+        }
+
+        /**
+         * send requests through another transport, e.g. {@code pooled -> recordings.record(pooled)}
+         * @param transport gets the pooled transport, returns the one to use
+         * @return this
+         */
+        public Builder setTransport(UnaryOperator<Transport> transport) {
+            this.transport = transport;
+            return this;
+        }
+
+        /**
+         * build client
+         * @return HttpClient4
+         */
+        public HttpClient4 build() {
+            HttpClient4 client = new HttpClient4(this);
+            if (this.warmUpUrl != null)
+                client.warmUp(this.warmUpUrl, this.warmUpConnections);
+            return client;
+        }
+    }
+
+    /**
+     * status & body of one response
+     */
+    private static class HttpResult<T> {
+
+        private final int statusCode;
+        private final T body;           // null unless status is 200
+
+        HttpResult(int statusCode, T body) {
+            this.statusCode = statusCode;
+            this.body = body;
         }
     }
 }
@@ -0,0 +1,29 @@
+package pers.translate.gtrans.http;
+
+import java.io.IOException;
+
+/**
+ * Request answered with a non 200 status, see ResponseParser.onStatus
+ */
+public class HttpStatusException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+
+    /**
+     * constructor
+     * @param statusCode http status of response
+     */
+    public HttpStatusException(int statusCode) {
+        super("http status " + statusCode);
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * @return http status of response
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
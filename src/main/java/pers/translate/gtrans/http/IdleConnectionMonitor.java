@@ -0,0 +1,67 @@
+package pers.translate.gtrans.http;
+
+import org.apache.http.conn.HttpClientConnectionManager;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closes expired & idle connections of every blocking client
+ * <p>
+ * All clients share one daemon thread, it is started with the first watched pool and stopped
+ * when the last one is unwatched. Every pool is closed at its own idle limit.
+ */
+final class IdleConnectionMonitor {
+
+    private static final long CHECK_INTERVAL_MILLIS = 2000;
+
+    private static ScheduledThreadPoolExecutor scheduler;
+    private static int watched;
+
+    private IdleConnectionMonitor() {}
+
+    /**
+     * check connections of pool periodically
+     * @param connMgr connection pool
+     * @param maxIdleMillis time in ms a connection may stay idle, 0 or less closes expired connections only
+     * @return handle to pass to unwatch
+     */
+    static synchronized ScheduledFuture<?> watch(final HttpClientConnectionManager connMgr,
+                                                 final long maxIdleMillis) {
+        if (scheduler == null) {
+            scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+                Thread thread = new Thread(r, "gtrans-idle-monitor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.setRemoveOnCancelPolicy(true);
+        }
+        watched++;
+        return scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                // release unavailable connection
+                connMgr.closeExpiredConnections();
+                // Close connections inactive for longer than the idle limit of the pool
+                if (maxIdleMillis > 0)
+                    connMgr.closeIdleConnections(maxIdleMillis, TimeUnit.MILLISECONDS);
+            } catch (RuntimeException e) {
+                // a thrown exception would stop the periodic check
+                e.printStackTrace();
+            }
+        }, CHECK_INTERVAL_MILLIS, CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * stop checking a pool
+     * @param handle handle returned by watch
+     */
+    static synchronized void unwatch(ScheduledFuture<?> handle) {
+        if (!handle.cancel(false))
+            return;     // unwatched already
+        if (--watched == 0) {
+            scheduler.shutdown();
+            scheduler = null;
+        }
+    }
+}
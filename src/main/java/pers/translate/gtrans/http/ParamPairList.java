@@ -2,33 +2,64 @@ package pers.translate.gtrans.http;
 
 import org.apache.http.NameValuePair;
 import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.util.ByteArrayBuffer;
 
-import java.util.LinkedList;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
  * Param pair list for Http Request
+ * <p>
+ * Pairs are kept in an array in insertion order. An indexed list also keeps pairs by name, so
+ * finding a pair doesn't scan the whole list.
  */
 public class ParamPairList {
 
+    private static final int DEFAULT_CAPACITY = 8;
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes();
+    static final int MAX_ENCODED_CHAR = 12;     // surrogate pair as 4 escaped bytes
+
     // pair list
     private final List<NameValuePair> pairList;
+    // pairs by name, null if not indexed
+    private final Map<String, List<NameValuePair>> index;
 
     /**
      * Default constructor
      */
     public ParamPairList(){
-        pairList = new LinkedList<>();
+        this(DEFAULT_CAPACITY, false);
+    }
+
+    /**
+     * Constructor with expected size
+     * @param initialCapacity expected number of pairs
+     */
+    public ParamPairList(int initialCapacity){
+        this(initialCapacity, false);
+    }
+
+    /**
+     * Constructor with expected size
+     * @param initialCapacity expected number of pairs
+     * @param indexed keep pairs by name for find methods
+     */
+    public ParamPairList(int initialCapacity, boolean indexed){
+        pairList = new ArrayList<>(initialCapacity);
+        index = indexed ? new HashMap<>() : null;
     }
 
     /**
      * Constructor with Map
      */
     public ParamPairList(Map<String, Object> params){
-        pairList = new LinkedList<>();
+        this(params.size(), false);
         for (Map.Entry<String, Object> entry : params.entrySet())
-            pairList.add(new BasicNameValuePair(entry.getKey(), entry.getValue().toString()));
+            add(entry.getKey(), entry.getValue());
     }
 
     /**
@@ -37,7 +68,10 @@ public class ParamPairList {
      * @param value value
      */
     public void add(String key, Object value){
-        pairList.add(new BasicNameValuePair(key, value.toString()));
+        NameValuePair pair = new BasicNameValuePair(key, value.toString());
+        pairList.add(pair);
+        if (index != null)
+            index.computeIfAbsent(key, k -> new ArrayList<>(1)).add(pair);
     }
 
     /**
@@ -46,6 +80,10 @@ public class ParamPairList {
      * @return NameValuePair
      */
     public NameValuePair findParamPairByKey(String key){
+        if (index != null) {
+            List<NameValuePair> pairs = index.get(key);
+            return pairs == null ? null : pairs.get(0);
+        }
         for(NameValuePair item: pairList)
             if (item.getName().equals(key))
                 return item;
@@ -58,7 +96,11 @@ public class ParamPairList {
      * @return NameValuePair
      */
     public List<NameValuePair> findAllParamPairByKey(String key){
-        List<NameValuePair> results = new LinkedList<>();
+        if (index != null) {
+            List<NameValuePair> pairs = index.get(key);
+            return pairs == null ? null : new ArrayList<>(pairs);
+        }
+        List<NameValuePair> results = new ArrayList<>();
         for(NameValuePair item: pairList)
             if (item.getName().equals(key))
                 results.add(item);
@@ -75,7 +117,13 @@ public class ParamPairList {
      * @return bool
      */
     public boolean isParamPairExist(String key, String value){
-        for(NameValuePair item: pairList)
+        List<NameValuePair> candidates = pairList;
+        if (index != null) {
+            candidates = index.get(key);
+            if (candidates == null)
+                return false;
+        }
+        for(NameValuePair item: candidates)
             if (item.getName().equals(key) && item.getValue().equals(value))
                 return true;
         return false;
@@ -99,11 +147,11 @@ public class ParamPairList {
     }
 
     /**
-     * get param list
+     * get param list, changes to it change this list
      * @return list
      */
     public List<NameValuePair> getPairList(){
-        return pairList;
+        return index == null ? pairList : new IndexedView();
     }
 
     /**
@@ -113,4 +161,211 @@ public class ParamPairList {
     public int size(){
         return pairList.size();
     }
+
+    /**
+     * exact size of the list as utf-8 'x-www-form-urlencoded' body
+     * @return body size in bytes
+     */
+    public int urlEncodedLength(){
+        int length = pairList.isEmpty() ? 0 : pairList.size() * 2 - 1; // '=' & '&'
+        for (NameValuePair pair : pairList)
+            length += urlEncodedLength(pair.getName()) + urlEncodedLength(pair.getValue());
+        return length;
+    }
+
+    /**
+     * write the list as utf-8 'x-www-form-urlencoded' body, same bytes as UrlEncodedFormEntity
+     * @param buffer buffer to append to, can be cleared & reused
+     */
+    public void writeUrlEncoded(ByteArrayBuffer buffer){
+        int length = urlEncodedLength();
+        // encoder wants room for one more char than it writes
+        buffer.ensureCapacity(length + MAX_ENCODED_CHAR);
+        ByteBuffer target = ByteBuffer.wrap(buffer.buffer(), buffer.length(), length + MAX_ENCODED_CHAR);
+        newUrlEncoder().encode(target);
+        buffer.setLength(buffer.length() + length);
+    }
+
+    /**
+     * encoder writing the list as 'x-www-form-urlencoded' body in pieces
+     * @return UrlEncoder at start of body
+     */
+    UrlEncoder newUrlEncoder(){
+        return new UrlEncoder();
+    }
+
+    private static int urlEncodedLength(String s){
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80)
+                length += isSafe(c) || c == ' ' ? 1 : 3;
+            else if (c < 0x800)
+                length += 6;
+            else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                length += 12;
+                i++;
+            } else if (Character.isSurrogate(c))
+                length += 3;    // unpaired surrogate is encoded as '?'
+            else
+                length += 9;
+        }
+        return length;
+    }
+
+    /**
+     * encode char at index i
+     * @param s String
+     * @param i char index
+     * @param dst target with at least MAX_ENCODED_CHAR bytes remaining
+     * @return index of next char
+     */
+    private static int writeUrlEncoded(String s, int i, ByteBuffer dst){
+        char c = s.charAt(i);
+        if (c < 0x80) {
+            if (isSafe(c))
+                dst.put((byte) c);
+            else if (c == ' ')
+                dst.put((byte) '+');
+            else
+                writeEscaped(c, dst);
+        } else if (c < 0x800) {
+            writeEscaped(0xc0 | (c >> 6), dst);
+            writeEscaped(0x80 | (c & 0x3f), dst);
+        } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+            int cp = Character.toCodePoint(c, s.charAt(i + 1));
+            writeEscaped(0xf0 | (cp >> 18), dst);
+            writeEscaped(0x80 | ((cp >> 12) & 0x3f), dst);
+            writeEscaped(0x80 | ((cp >> 6) & 0x3f), dst);
+            writeEscaped(0x80 | (cp & 0x3f), dst);
+            return i + 2;
+        } else if (Character.isSurrogate(c)) {
+            writeEscaped('?', dst);
+        } else {
+            writeEscaped(0xe0 | (c >> 12), dst);
+            writeEscaped(0x80 | ((c >> 6) & 0x3f), dst);
+            writeEscaped(0x80 | (c & 0x3f), dst);
+        }
+        return i + 1;
+    }
+
+    /**
+     * encode chars from index i while dst has room
+     * @return index of next char
+     */
+    private static int writePart(String s, int i, ByteBuffer dst, int last){
+        int length = s.length();
+        while (i < length && dst.position() <= last)
+            i = writeUrlEncoded(s, i, dst);
+        return i;
+    }
+
+    private static void writeEscaped(int b, ByteBuffer dst){
+        dst.put((byte) '%');
+        dst.put(HEX[(b >> 4) & 0xf]);
+        dst.put(HEX[b & 0xf]);
+    }
+
+    // unreserved characters of 'x-www-form-urlencoded'
+    private static boolean isSafe(char c){
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '-' || c == '_' || c == '.' || c == '*';
+    }
+
+    /**
+     * rebuild pairs by name after the list was changed through getPairList
+     */
+    private void reindex(){
+        index.clear();
+        for (NameValuePair pair : pairList)
+            index.computeIfAbsent(pair.getName(), k -> new ArrayList<>(1)).add(pair);
+    }
+
+    /**
+     * Live view of an indexed list, keeps the index in step with changes
+     */
+    private class IndexedView extends AbstractList<NameValuePair> {
+
+        @Override
+        public NameValuePair get(int i){
+            return pairList.get(i);
+        }
+
+        @Override
+        public int size(){
+            return pairList.size();
+        }
+
+        @Override
+        public NameValuePair set(int i, NameValuePair pair){
+            NameValuePair old = pairList.set(i, pair);
+            reindex();
+            return old;
+        }
+
+        @Override
+        public void add(int i, NameValuePair pair){
+            pairList.add(i, pair);
+            modCount++;
+            reindex();
+        }
+
+        @Override
+        public NameValuePair remove(int i){
+            NameValuePair old = pairList.remove(i);
+            modCount++;
+            reindex();
+            return old;
+        }
+    }
+
+    /**
+     * Resumable 'x-www-form-urlencoded' encoder, fills a buffer at a time
+     */
+    class UrlEncoder {
+
+        private int pair;       // current pair
+        private int part;       // 0 separator, 1 name, 2 '=', 3 value
+        private int pos;        // char index in name or value
+
+        /**
+         * encode until body is done or dst is (nearly) full
+         * @param dst target buffer, at least MAX_ENCODED_CHAR bytes
+         * @return true if whole body is written
+         */
+        boolean encode(ByteBuffer dst){
+            // room for one more char is checked once per char, not per byte
+            int last = dst.limit() - MAX_ENCODED_CHAR;
+            while (pair < pairList.size()) {
+                if (dst.position() > last)
+                    return false;
+                NameValuePair current = pairList.get(pair);
+                switch (part) {
+                    case 0:
+                        if (pair > 0)
+                            dst.put((byte) '&');
+                        part = 1;
+                        pos = 0;
+                        break;
+                    case 1:
+                        pos = writePart(current.getName(), pos, dst, last);
+                        if (pos == current.getName().length())
+                            part = 2;
+                        break;
+                    case 2:
+                        dst.put((byte) '=');
+                        part = 3;
+                        pos = 0;
+                        break;
+                    default:
+                        pos = writePart(current.getValue(), pos, dst, last);
+                        if (pos == current.getValue().length()) {
+                            pair++;
+                            part = 0;
+                        }
+                }
+            }
+            return true;
+        }
+    }
 }
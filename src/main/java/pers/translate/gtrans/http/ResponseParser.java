@@ -0,0 +1,45 @@
+package pers.translate.gtrans.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Turn the body of a 200 response into a result while it is read
+ * <p>
+ * A response of other status gives the result of onStatus, null unless overridden.
+ * @param <T> result type
+ */
+public interface ResponseParser<T> {
+
+    /**
+     * read whole body as utf-8 String
+     */
+    ResponseParser<String> STRING = content -> {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = content.read(buffer)) != -1)
+            body.write(buffer, 0, n);
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    };
+
+    /**
+     * parse body, the rest of an unfinished body is skipped by the client
+     * @param content response body
+     * @return result
+     * @throws IOException read error / malformed body
+     */
+    T parse(InputStream content) throws IOException;
+
+    /**
+     * result of a non 200 response, once retries are used up
+     * @param statusCode http status
+     * @return result, null by default
+     * @throws IOException to fail the request instead, e.g. HttpStatusException
+     */
+    default T onStatus(int statusCode) throws IOException {
+        return null;
+    }
+}
@@ -0,0 +1,253 @@
+package pers.translate.gtrans.http;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Directory of recorded 200 responses, one file per distinct request
+ * <p>
+ * A request is identified by method, path, query & body, the host is left out, so responses
+ * recorded from the real api replay for any endpoint, or from a local stub server. With
+ * {@link #record} a client saves what it receives, with {@link #replay} it answers from the
+ * directory without the network. A file holds a line 'status content-type' followed by the body.
+ */
+public final class ResponseRecordings {
+
+    private static final String SUFFIX = ".response";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Path dir;
+
+    /**
+     * constructor
+     * @param dir directory of recordings, created if missing
+     * @throws IOException can't create directory
+     */
+    public ResponseRecordings(Path dir) throws IOException {
+        this.dir = Files.createDirectories(dir);
+    }
+
+    /**
+     * transport saving every 200 response of delegate
+     * @param delegate transport sending requests
+     * @return Transport
+     */
+    public Transport record(final Transport delegate) {
+        return request -> {
+            String key = key(request);
+            CloseableHttpResponse response = delegate.execute(request);
+            if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK || response.getEntity() == null)
+                return response;
+            try {
+                // buffer the body to save it & still hand it to the caller
+                HttpEntity entity = response.getEntity();
+                Header contentType = entity.getContentType();
+                Recording recording = new Recording(HttpStatus.SC_OK,
+                        contentType == null ? null : contentType.getValue(), EntityUtils.toByteArray(entity));
+                save(key, recording);
+                response.setEntity(recording.toEntity());
+                return response;
+            } catch (IOException | RuntimeException e) {
+                response.close();
+                throw e;
+            }
+        };
+    }
+
+    /**
+     * transport answering from recordings only
+     * @return Transport, fails on a request never recorded
+     */
+    public Transport replay() {
+        return request -> {
+            Recording recording = load(key(request));
+            if (recording == null)
+                throw new IOException("no recorded response of " + request.getURI());
+            BufferedResponse response = new BufferedResponse(recording.status);
+            response.setEntity(recording.toEntity());
+            return response;
+        };
+    }
+
+    /**
+     * key of request
+     * @param request request, a non repeatable body is replaced by a buffered copy
+     * @return key
+     * @throws IOException can't read body
+     */
+    public static String key(HttpUriRequest request) throws IOException {
+        byte[] body = new byte[0];
+        if (request instanceof HttpEntityEnclosingRequest) {
+            HttpEntityEnclosingRequest enclosing = (HttpEntityEnclosingRequest) request;
+            HttpEntity entity = enclosing.getEntity();
+            if (entity != null) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                entity.writeTo(out);
+                body = out.toByteArray();
+                if (!entity.isRepeatable()) {
+                    ByteArrayEntity copy = new ByteArrayEntity(body);
+                    copy.setContentType(entity.getContentType());
+                    enclosing.setEntity(copy);
+                }
+            }
+        }
+        URI uri = request.getURI();
+        String pathAndQuery = uri.getRawQuery() == null ? uri.getRawPath() : uri.getRawPath() + "?" + uri.getRawQuery();
+        return key(request.getMethod(), pathAndQuery, body);
+    }
+
+    /**
+     * key of request, for servers replaying recordings
+     * @param method http method
+     * @param pathAndQuery raw path & query of url
+     * @param body request body
+     * @return key
+     */
+    public static String key(String method, String pathAndQuery, byte[] body) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);     // every jvm has SHA-256
+        }
+        digest.update((method + " " + pathAndQuery + "\n").getBytes(StandardCharsets.UTF_8));
+        byte[] hash = digest.digest(body);
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[i * 2] = HEX[(hash[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX[hash[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * save recording, replaces an older one of the same key
+     * @param key key of request
+     * @param recording response
+     * @throws IOException write error
+     */
+    public void save(String key, Recording recording) throws IOException {
+        byte[] head = (recording.status + " " + (recording.contentType == null ? "-" : recording.contentType) + "\n")
+                .getBytes(StandardCharsets.UTF_8);
+        byte[] content = new byte[head.length + recording.body.length];
+        System.arraycopy(head, 0, content, 0, head.length);
+        System.arraycopy(recording.body, 0, content, head.length, recording.body.length);
+        // readers never see a half written file
+        Path temp = Files.createTempFile(this.dir, key, ".tmp");
+        try {
+            Files.write(temp, content);
+            Files.move(temp, this.dir.resolve(key + SUFFIX), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * load recording
+     * @param key key of request
+     * @return Recording, null if not recorded
+     * @throws IOException read error / malformed file
+     */
+    public Recording load(String key) throws IOException {
+        byte[] content;
+        try {
+            content = Files.readAllBytes(this.dir.resolve(key + SUFFIX));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        int newline = 0;
+        while (newline < content.length && content[newline] != '\n')
+            newline++;
+        String[] head = new String(content, 0, newline, StandardCharsets.UTF_8).split(" ", 2);
+        if (newline == content.length || head.length != 2)
+            throw new IOException("malformed recording " + key);
+        byte[] body = new byte[content.length - newline - 1];
+        System.arraycopy(content, newline + 1, body, 0, body.length);
+        try {
+            return new Recording(Integer.parseInt(head[0]), "-".equals(head[1]) ? null : head[1], body);
+        } catch (NumberFormatException e) {
+            throw new IOException("malformed recording " + key, e);
+        }
+    }
+
+    /**
+     * @return directory of recordings
+     */
+    public Path getDir() {
+        return dir;
+    }
+
+    /**
+     * status, content type & body of a recorded response
+     */
+    public static final class Recording {
+
+        private final int status;
+        private final String contentType;     // null if unknown
+        private final byte[] body;
+
+        /**
+         * constructor
+         * @param status http status
+         * @param contentType content type, null if unknown
+         * @param body response body
+         */
+        public Recording(int status, String contentType, byte[] body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        private HttpEntity toEntity() {
+            ByteArrayEntity entity = new ByteArrayEntity(body);
+            if (contentType != null)
+                entity.setContentType(contentType);
+            return entity;
+        }
+    }
+
+    /**
+     * response held in memory, nothing to release on close
+     */
+    private static final class BufferedResponse extends BasicHttpResponse implements CloseableHttpResponse {
+
+        BufferedResponse(int status) {
+            super(HttpVersion.HTTP_1_1, status, null);
+        }
+
+        @Override
+        public void close() {}
+    }
+}
@@ -0,0 +1,136 @@
+package pers.translate.gtrans.http;
+
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retry policy of HttpClient4, exponential backoff with full jitter and a retry budget
+ * <p>
+ * Every request deposits budgetRatio tokens (up to budgetCap), every retry withdraws one token,
+ * so retries are at most about budgetRatio of all requests and can't multiply load during an outage.
+ */
+public class RetryPolicy {
+
+    private static final int DEFAULT_MAX_ATTEMPTS = 3;
+    private static final long DEFAULT_BASE_DELAY_MILLIS = 100;
+    private static final long DEFAULT_MAX_DELAY_MILLIS = 2000;
+    private static final double DEFAULT_BUDGET_RATIO = 0.1;
+    private static final double DEFAULT_BUDGET_CAP = 10;
+    private static final Integer[] DEFAULT_RETRYABLE_STATUS = {408, 429, 500, 502, 503, 504};
+
+    private final int maxAttempts;              // first attempt included
+    private final long baseDelayMillis;         // backoff cap of first retry
+    private final long maxDelayMillis;          // backoff cap of any retry
+    private final Set<Integer> retryableStatus;
+    private final double budgetRatio;           // tokens deposited per request
+    private final double budgetCap;             // max stored tokens
+    private double budget;                      // guarded by this
+
+    /**
+     * Default constructor, 3 attempts, 100ms~2s backoff, retries up to 10% of requests
+     */
+    public RetryPolicy() {
+        this(DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_DELAY_MILLIS, DEFAULT_MAX_DELAY_MILLIS,
+                new HashSet<>(Arrays.asList(DEFAULT_RETRYABLE_STATUS)), DEFAULT_BUDGET_RATIO, DEFAULT_BUDGET_CAP);
+    }
+
+    /**
+     * constructor
+     * @param maxAttempts max attempts of one request, first attempt included
+     * @param baseDelayMillis backoff cap of first retry, doubled every retry
+     * @param maxDelayMillis backoff cap of any retry
+     * @param retryableStatus http status worth a retry
+     * @param budgetRatio retry tokens deposited per request
+     * @param budgetCap max stored retry tokens, the budget starts full
+     */
+    public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis, Set<Integer> retryableStatus,
+                       double budgetRatio, double budgetCap) {
+        if (maxAttempts < 1 || baseDelayMillis < 0 || maxDelayMillis < baseDelayMillis)
+            throw new IllegalArgumentException("need maxAttempts >= 1 and 0 <= baseDelayMillis <= maxDelayMillis");
+        if (budgetRatio < 0 || budgetCap < 0)
+            throw new IllegalArgumentException("budgetRatio and budgetCap must not be negative");
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.retryableStatus = new HashSet<>(retryableStatus);
+        this.budgetRatio = budgetRatio;
+        this.budgetCap = budgetCap;
+        this.budget = budgetCap;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * is http status worth a retry
+     * @param statusCode http status
+     * @return bool
+     */
+    public boolean isRetryable(int statusCode) {
+        return retryableStatus.contains(statusCode);
+    }
+
+    /**
+     * is io error worth a retry, connection level failures are, interrupts & unknown hosts are not
+     * @param e io error
+     * @return bool
+     */
+    public boolean isRetryable(IOException e) {
+        if (e instanceof SocketTimeoutException || e instanceof ConnectTimeoutException
+                || e instanceof ConnectionPoolTimeoutException)
+            return true;
+        if (e instanceof InterruptedIOException)
+            return false;
+        return e instanceof ConnectException || e instanceof NoHttpResponseException || e instanceof SocketException;
+    }
+
+    /**
+     * backoff before a retry, uniformly random in [0, min(maxDelay, baseDelay * 2^retry)]
+     * @param retry retry number, 0 for first retry
+     * @return millis to wait
+     */
+    public long backoffMillis(int retry) {
+        long cap = baseDelayMillis << Math.min(retry, 30);
+        if (cap < 0 || cap > maxDelayMillis)
+            cap = maxDelayMillis;
+        return cap == 0 ? 0 : ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    /**
+     * deposit budget for a new request
+     */
+    public synchronized void onRequest() {
+        budget = Math.min(budgetCap, budget + budgetRatio);
+    }
+
+    /**
+     * withdraw budget for a retry
+     * @return false if budget is used up, don't retry
+     */
+    public synchronized boolean tryRetry() {
+        if (budget < 1)
+            return false;
+        budget -= 1;
+        return true;
+    }
+
+    /**
+     * get stored retry tokens
+     * @return tokens
+     */
+    public synchronized double getBudget() {
+        return budget;
+    }
+}
@@ -0,0 +1,25 @@
+package pers.translate.gtrans.http;
+
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+
+import java.io.IOException;
+
+/**
+ * Sends one request & returns its response, the layer below HttpClient4
+ * <p>
+ * By default it is the pooled apache client. Set another one with
+ * {@link HttpClient4.Builder#setTransport}, e.g. to record responses to disk or to replay them
+ * without the network, see {@link ResponseRecordings}. Retry, hedging, rate limit & connection
+ * gates of HttpClient4 stay in front of any transport.
+ */
+public interface Transport {
+
+    /**
+     * execute request
+     * @param request request
+     * @return response, closed by the caller once its body is read
+     * @throws IOException http request error
+     */
+    CloseableHttpResponse execute(HttpUriRequest request) throws IOException;
+}
@@ -0,0 +1,142 @@
+package pers.translate.gtrans.http;
+
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.entity.HttpAsyncContentProducer;
+import org.apache.http.util.ByteArrayBuffer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * utf-8 'x-www-form-urlencoded' entity encoded while it is written
+ * <p>
+ * Params are percent-encoded buffer by buffer into pooled ByteBuffers, no String or byte array of
+ * the whole body is built. Content length is computed up front. The blocking client writes heap
+ * buffers straight to the connection, the non-blocking client writes buffers (direct ones without
+ * copy) straight to the socket channel. Every write encodes again, so the entity is repeatable &
+ * can be sent by several requests at once, but produceContent serves one request at a time.
+ */
+public class UrlEncodedEntity extends AbstractHttpEntity implements HttpAsyncContentProducer {
+
+    private static final String CONTENT_TYPE =
+            ContentType.create(URLEncodedUtils.CONTENT_TYPE, StandardCharsets.UTF_8).toString();
+
+    private final ParamPairList data;
+    private final ByteBufferPool pool;
+    private final long contentLength;
+
+    // state of produceContent
+    private ParamPairList.UrlEncoder asyncEncoder;
+    private ByteBuffer asyncBuffer;         // read mode, holds bytes not taken by the channel yet
+    private boolean asyncEncoded;
+
+    /**
+     * constructor
+     * @param data params, must not change while the entity is used
+     * @param pool buffers to encode into
+     */
+    public UrlEncodedEntity(ParamPairList data, ByteBufferPool pool) {
+        this.data = data;
+        this.pool = pool;
+        this.contentLength = data.urlEncodedLength();
+        setContentType(CONTENT_TYPE);
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+    /**
+     * body as stream, encodes the whole body into one array
+     * @return InputStream
+     */
+    @Override
+    public InputStream getContent() {
+        ByteArrayBuffer body = new ByteArrayBuffer((int) contentLength);
+        data.writeUrlEncoded(body);
+        return new ByteArrayInputStream(body.buffer(), 0, body.length());
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        ParamPairList.UrlEncoder encoder = data.newUrlEncoder();
+        ByteBuffer buffer = pool.acquire();
+        try {
+            // a direct buffer can't be handed to an OutputStream, let a channel copy it out
+            WritableByteChannel channel = buffer.hasArray() ? null : Channels.newChannel(out);
+            boolean encoded;
+            do {
+                encoded = encoder.encode(buffer);
+                buffer.flip();
+                if (channel == null) {
+                    out.write(buffer.array(), buffer.arrayOffset(), buffer.limit());
+                } else {
+                    while (buffer.hasRemaining())
+                        channel.write(buffer);
+                }
+                buffer.clear();
+            } while (!encoded);
+        } finally {
+            pool.release(buffer);
+        }
+    }
+
+    @Override
+    public void produceContent(ContentEncoder encoder, IOControl ioControl) throws IOException {
+        if (asyncBuffer == null) {
+            asyncEncoder = data.newUrlEncoder();
+            asyncBuffer = pool.acquire();
+            asyncBuffer.flip();
+            asyncEncoded = false;
+        }
+        while (true) {
+            if (!asyncBuffer.hasRemaining()) {
+                if (asyncEncoded) {
+                    encoder.complete();
+                    close();
+                    return;
+                }
+                asyncBuffer.clear();
+                asyncEncoded = asyncEncoder.encode(asyncBuffer);
+                asyncBuffer.flip();
+            }
+            encoder.write(asyncBuffer);
+            // channel is full, called again when it is writable
+            if (asyncBuffer.hasRemaining())
+                return;
+        }
+    }
+
+    /**
+     * reset produceContent & give its buffer back, called by the non-blocking client
+     */
+    @Override
+    public void close() {
+        if (asyncBuffer != null) {
+            pool.release(asyncBuffer);
+            asyncBuffer = null;
+            asyncEncoder = null;
+        }
+    }
+}
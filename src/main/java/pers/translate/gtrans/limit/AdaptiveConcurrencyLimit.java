@@ -0,0 +1,167 @@
+package pers.translate.gtrans.limit;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrent request limit adjusted by AIMD (additive-increase/multiplicative-decrease)
+ * <p>
+ * Each success raises the limit by 1/limit, so it grows by about one per round trip of the whole window.
+ * An overload (429 / 503 / io error / latency spike) multiplies the limit by backoffRatio.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    private static final double LATENCY_SMOOTHING = 0.1;   // weight of new sample in latency average
+    private static final int LATENCY_WARM_UP = 10;         // samples before latency spikes are judged
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;          // limit multiplier on overload, 0~1
+    private final double latencyTolerance;      // latency above average * tolerance is a spike
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private double limit;                       // guarded by lock
+    private int inFlight;                       // guarded by lock
+    private double averageLatencyNanos;         // guarded by lock
+    private long latencySamples;                // guarded by lock
+    private long overloadCount;                 // guarded by lock
+
+    /**
+     * constructor
+     * @param initialLimit limit at start
+     * @param minLimit lower bound of limit, at least 1
+     * @param maxLimit upper bound of limit
+     * @param backoffRatio limit multiplier on overload, 0~1
+     * @param latencyTolerance latency above average * tolerance counts as overload, 0 to disable
+     */
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double backoffRatio,
+                                    double latencyTolerance) {
+        if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit)
+            throw new IllegalArgumentException("need 1 <= minLimit <= initialLimit <= maxLimit");
+        if (backoffRatio <= 0 || backoffRatio >= 1)
+            throw new IllegalArgumentException("backoffRatio must be in (0, 1)");
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyTolerance = latencyTolerance;
+    }
+
+    /**
+     * wait for a free slot
+     * @return nanos waited, 0 if a slot was free
+     * @throws InterruptedIOException interrupted while waiting
+     */
+    public long acquire() throws InterruptedIOException {
+        long start = 0;
+        lock.lock();
+        try {
+            while (inFlight >= (int) limit) {
+                if (start == 0)
+                    start = System.nanoTime();
+                released.await();
+            }
+            inFlight++;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting concurrency limit");
+        } finally {
+            lock.unlock();
+        }
+        return start == 0 ? 0 : System.nanoTime() - start;
+    }
+
+    /**
+     * free slot after a successful request
+     * @param latencyNanos request latency
+     */
+    public void onSuccess(long latencyNanos) {
+        lock.lock();
+        try {
+            inFlight--;
+            boolean spike = latencyTolerance > 0 && latencySamples >= LATENCY_WARM_UP
+                    && latencyNanos > averageLatencyNanos * latencyTolerance;
+            averageLatencyNanos = latencySamples == 0 ? latencyNanos
+                    : averageLatencyNanos + (latencyNanos - averageLatencyNanos) * LATENCY_SMOOTHING;
+            latencySamples++;
+            if (spike)
+                decrease();
+            else
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * free slot after an overloaded / failed request
+     */
+    public void onOverload() {
+        lock.lock();
+        try {
+            inFlight--;
+            decrease();
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * free slot after a request which says nothing about load, like a 4xx
+     */
+    public void onIgnore() {
+        lock.lock();
+        try {
+            inFlight--;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void decrease() {
+        limit = Math.max(minLimit, limit * backoffRatio);
+        overloadCount++;
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getOverloadCount() {
+        lock.lock();
+        try {
+            return overloadCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getAverageLatencyMillis() {
+        lock.lock();
+        try {
+            return TimeUnit.NANOSECONDS.toMillis((long) averageLatencyNanos);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package pers.translate.gtrans.limit;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client side rate limit in front of http requests
+ * <p>
+ * A request first waits for the requests/sec and bytes/sec token buckets, then for a slot of the
+ * adaptive concurrency limit. The returned {@link Permit} must be released with the response status.
+ */
+public class RateLimiter {
+
+    private static final int DEFAULT_INITIAL_CONCURRENCY = 20;
+    private static final int DEFAULT_MIN_CONCURRENCY = 1;
+    private static final int DEFAULT_MAX_CONCURRENCY = 200;
+    private static final double DEFAULT_BACKOFF_RATIO = 0.7;
+    private static final double DEFAULT_LATENCY_TOLERANCE = 3.0;
+
+    private final TokenBucket requestBucket;            // null means unlimited
+    private final TokenBucket byteBucket;               // null means unlimited
+    private final AdaptiveConcurrencyLimit concurrencyLimit;
+
+    private final AtomicLong acquiredCount = new AtomicLong();
+    private final AtomicLong throttledCount = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+
+    /**
+     * constructor with default concurrency limit (20 initial, 1~200, x0.7 on overload)
+     * @param requestsPerSecond max requests per second, 0 means unlimited
+     * @param bytesPerSecond max request body bytes per second, 0 means unlimited
+     */
+    public RateLimiter(double requestsPerSecond, double bytesPerSecond) {
+        this(requestsPerSecond, bytesPerSecond, new AdaptiveConcurrencyLimit(DEFAULT_INITIAL_CONCURRENCY,
+                DEFAULT_MIN_CONCURRENCY, DEFAULT_MAX_CONCURRENCY, DEFAULT_BACKOFF_RATIO, DEFAULT_LATENCY_TOLERANCE));
+    }
+
+    /**
+     * constructor
+     * @param requestsPerSecond max requests per second, 0 means unlimited, burst is one second of requests
+     * @param bytesPerSecond max request body bytes per second, 0 means unlimited, burst is one second of bytes
+     * @param concurrencyLimit adaptive concurrency limit
+     */
+    public RateLimiter(double requestsPerSecond, double bytesPerSecond, AdaptiveConcurrencyLimit concurrencyLimit) {
+        this.requestBucket = requestsPerSecond > 0 ? new TokenBucket(requestsPerSecond, requestsPerSecond) : null;
+        this.byteBucket = bytesPerSecond > 0 ? new TokenBucket(bytesPerSecond, bytesPerSecond) : null;
+        this.concurrencyLimit = concurrencyLimit;
+    }
+
+    /**
+     * wait until a request of bodyBytes may be sent
+     * @param bodyBytes request body size, negative if unknown
+     * @return Permit to release after response
+     * @throws InterruptedIOException interrupted while waiting
+     */
+    public Permit acquire(long bodyBytes) throws InterruptedIOException {
+        long waited = 0;
+        if (requestBucket != null)
+            waited += requestBucket.acquire(1);
+        if (byteBucket != null && bodyBytes > 0)
+            waited += byteBucket.acquire(bodyBytes);
+        waited += concurrencyLimit.acquire();
+
+        acquiredCount.incrementAndGet();
+        if (waited > 0) {
+            throttledCount.incrementAndGet();
+            waitNanos.addAndGet(waited);
+        }
+        return new Permit();
+    }
+
+    /**
+     * get current state, HttpClient4 also reports part of it as TranslateMetrics gauges
+     * @return RateLimiterMetrics
+     */
+    public RateLimiterMetrics metrics() {
+        return new RateLimiterMetrics(
+                concurrencyLimit.getLimit(),
+                concurrencyLimit.getInFlight(),
+                concurrencyLimit.getOverloadCount(),
+                concurrencyLimit.getAverageLatencyMillis(),
+                requestBucket == null ? Double.POSITIVE_INFINITY : requestBucket.available(),
+                byteBucket == null ? Double.POSITIVE_INFINITY : byteBucket.available(),
+                acquiredCount.get(),
+                throttledCount.get(),
+                waitNanos.get() / 1000000
+        );
+    }
+
+    /**
+     * is status an overload signal
+     * @param statusCode http status, negative for io error
+     * @return bool
+     */
+    private static boolean isOverload(int statusCode) {
+        return statusCode < 0 || statusCode == 429 || statusCode == 503 || statusCode == 502 || statusCode == 504;
+    }
+
+    /**
+     * right to send one request
+     */
+    public class Permit {
+
+        private final long startNanos = System.nanoTime();
+        private boolean released;
+
+        /**
+         * release after response
+         * @param statusCode http status, negative for io error, 0 for a cancelled request
+         */
+        public void release(int statusCode) {
+            if (released)
+                return;
+            released = true;
+            if (isOverload(statusCode))
+                concurrencyLimit.onOverload();
+            else if (statusCode >= 200 && statusCode < 400)
+                concurrencyLimit.onSuccess(System.nanoTime() - startNanos);
+            else
+                concurrencyLimit.onIgnore();
+        }
+    }
+}
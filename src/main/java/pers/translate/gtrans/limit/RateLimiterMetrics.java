@@ -0,0 +1,87 @@
+package pers.translate.gtrans.limit;
+
+/**
+ * Snapshot of rate limiter state
+ */
+public class RateLimiterMetrics {
+
+    private final int concurrencyLimit;
+    private final int inFlight;
+    private final long overloadCount;
+    private final long averageLatencyMillis;
+    private final double availableRequests;
+    private final double availableBytes;
+    private final long acquiredCount;
+    private final long throttledCount;
+    private final long totalWaitMillis;
+
+    /**
+     * constructor
+     * @param concurrencyLimit current concurrent request limit
+     * @param inFlight requests holding a permit
+     * @param overloadCount times the limit was decreased
+     * @param averageLatencyMillis smoothed latency of successful requests
+     * @param availableRequests tokens of requests/sec bucket, infinity if unlimited
+     * @param availableBytes tokens of bytes/sec bucket, infinity if unlimited
+     * @param acquiredCount permits given
+     * @param throttledCount permits which had to wait
+     * @param totalWaitMillis time waited for all permits
+     */
+    public RateLimiterMetrics(int concurrencyLimit, int inFlight, long overloadCount, long averageLatencyMillis,
+                              double availableRequests, double availableBytes, long acquiredCount,
+                              long throttledCount, long totalWaitMillis) {
+        this.concurrencyLimit = concurrencyLimit;
+        this.inFlight = inFlight;
+        this.overloadCount = overloadCount;
+        this.averageLatencyMillis = averageLatencyMillis;
+        this.availableRequests = availableRequests;
+        this.availableBytes = availableBytes;
+        this.acquiredCount = acquiredCount;
+        this.throttledCount = throttledCount;
+        this.totalWaitMillis = totalWaitMillis;
+    }
+
+    public int getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    public long getOverloadCount() {
+        return overloadCount;
+    }
+
+    public long getAverageLatencyMillis() {
+        return averageLatencyMillis;
+    }
+
+    public double getAvailableRequests() {
+        return availableRequests;
+    }
+
+    public double getAvailableBytes() {
+        return availableBytes;
+    }
+
+    public long getAcquiredCount() {
+        return acquiredCount;
+    }
+
+    public long getThrottledCount() {
+        return throttledCount;
+    }
+
+    public long getTotalWaitMillis() {
+        return totalWaitMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RateLimiterMetrics{limit=%d, inFlight=%d, overload=%d, avgLatency=%dms, " +
+                        "requestTokens=%.1f, byteTokens=%.1f, acquired=%d, throttled=%d, wait=%dms}",
+                concurrencyLimit, inFlight, overloadCount, averageLatencyMillis, availableRequests,
+                availableBytes, acquiredCount, throttledCount, totalWaitMillis);
+    }
+}
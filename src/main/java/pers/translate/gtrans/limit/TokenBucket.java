@@ -0,0 +1,95 @@
+package pers.translate.gtrans.limit;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket, refilled at a fixed rate up to its capacity
+ * <p>
+ * Tokens are reserved first and waited for afterwards, so a request larger than the capacity
+ * still passes by taking the bucket into debt which later requests wait out in order.
+ */
+public class TokenBucket {
+
+    private final double ratePerSecond;     // tokens added per second
+    private final double capacity;          // max stored tokens (burst)
+    private double tokens;                  // may be negative, guarded by this
+    private long lastRefillNanos;           // guarded by this
+
+    /**
+     * constructor
+     * @param ratePerSecond tokens added per second
+     * @param capacity max stored tokens, the bucket starts full
+     */
+    public TokenBucket(double ratePerSecond, double capacity) {
+        if (ratePerSecond <= 0 || capacity <= 0)
+            throw new IllegalArgumentException("ratePerSecond and capacity must be positive");
+        this.ratePerSecond = ratePerSecond;
+        this.capacity = capacity;
+        this.tokens = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * take tokens, wait until they are available
+     * @param permits tokens to take
+     * @return nanos waited
+     * @throws InterruptedIOException interrupted while waiting
+     */
+    public long acquire(double permits) throws InterruptedIOException {
+        long waitNanos = reserve(permits);
+        if (waitNanos > 0) {
+            // sleep outside the monitor
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting rate limit");
+            }
+        }
+        return waitNanos;
+    }
+
+    /**
+     * take tokens only if available now
+     * @param permits tokens to take
+     * @return true if taken
+     */
+    public synchronized boolean tryAcquire(double permits) {
+        refill(System.nanoTime());
+        if (tokens < permits)
+            return false;
+        tokens -= permits;
+        return true;
+    }
+
+    /**
+     * take tokens, going into debt if needed
+     * @param permits tokens to take
+     * @return nanos to wait before the tokens are paid
+     */
+    private synchronized long reserve(double permits) {
+        refill(System.nanoTime());
+        double deficit = permits - tokens;
+        tokens -= permits;
+        return deficit <= 0 ? 0 : (long) (deficit / ratePerSecond * TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * get tokens available now
+     * @return tokens, negative while in debt
+     */
+    public synchronized double available() {
+        refill(System.nanoTime());
+        return tokens;
+    }
+
+    public double getRatePerSecond() {
+        return ratePerSecond;
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * ratePerSecond / TimeUnit.SECONDS.toNanos(1));
+        lastRefillNanos = now;
+    }
+}
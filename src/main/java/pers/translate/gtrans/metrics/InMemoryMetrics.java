@@ -0,0 +1,121 @@
+package pers.translate.gtrans.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Simple in-memory metrics registry
+ */
+public class InMemoryMetrics implements TranslateMetrics {
+
+    private final Map<Phase, LatencyHistogram> latencies = new EnumMap<>(Phase.class);
+    private final LatencyHistogram requestBytes = new LatencyHistogram();
+    private final LatencyHistogram responseBytes = new LatencyHistogram();
+    private final LatencyHistogram batchSizes = new LatencyHistogram();
+    private final ConcurrentMap<Integer, LongAdder> statusCounts = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    /**
+     * Default constructor
+     */
+    public InMemoryMetrics() {
+        // fill once, the map is only read afterwards
+        for (Phase phase : Phase.values())
+            latencies.put(phase, new LatencyHistogram());
+    }
+
+    @Override
+    public void recordLatency(Phase phase, long nanos) {
+        latencies.get(phase).record(nanos);
+    }
+
+    @Override
+    public void recordRequestBytes(long bytes) {
+        requestBytes.record(bytes);
+    }
+
+    @Override
+    public void recordResponseBytes(long bytes) {
+        responseBytes.record(bytes);
+    }
+
+    @Override
+    public void recordBatchSize(int items) {
+        batchSizes.record(items);
+    }
+
+    @Override
+    public void recordStatus(int statusCode) {
+        statusCounts.computeIfAbsent(statusCode, k -> new LongAdder()).increment();
+    }
+
+    @Override
+    public void registerGauge(String name, LongSupplier gauge) {
+        gauges.put(name, gauge);
+    }
+
+    /**
+     * get latency histogram of a phase, values are nanos
+     * @param phase Phase
+     * @return LatencyHistogram
+     */
+    public LatencyHistogram getLatency(Phase phase) {
+        return latencies.get(phase);
+    }
+
+    public LatencyHistogram getRequestBytes() {
+        return requestBytes;
+    }
+
+    public LatencyHistogram getResponseBytes() {
+        return responseBytes;
+    }
+
+    public LatencyHistogram getBatchSizes() {
+        return batchSizes;
+    }
+
+    /**
+     * get count of responses per http status, -1 means io error
+     * @return sorted map
+     */
+    public Map<Integer, Long> getStatusCounts() {
+        Map<Integer, Long> counts = new TreeMap<>();
+        for (Map.Entry<Integer, LongAdder> entry : statusCounts.entrySet())
+            counts.put(entry.getKey(), entry.getValue().sum());
+        return counts;
+    }
+
+    /**
+     * read all gauges now
+     * @return sorted map
+     */
+    public Map<String, Long> getGauges() {
+        Map<String, Long> values = new TreeMap<>();
+        for (Map.Entry<String, LongSupplier> entry : gauges.entrySet())
+            values.put(entry.getKey(), entry.getValue().getAsLong());
+        return values;
+    }
+
+    /**
+     * format all metrics, one per line
+     * @return String
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        for (Phase phase : Phase.values())
+            report.append("latency.").append(phase.name().toLowerCase()).append(": ")
+                    .append(latencies.get(phase).toLatencyString()).append('\n');
+        report.append("request.bytes: ").append(requestBytes).append('\n');
+        report.append("response.bytes: ").append(responseBytes).append('\n');
+        report.append("batch.size: ").append(batchSizes).append('\n');
+        report.append("status: ").append(getStatusCounts()).append('\n');
+        report.append("gauges: ").append(getGauges()).append('\n');
+        return report.toString();
+    }
+}
@@ -0,0 +1,99 @@
+package pers.translate.gtrans.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free histogram with power of two buckets
+ * <p>
+ * Bucket i counts values in [2^(i-1), 2^i), percentiles are reported as the bucket upper bound,
+ * so they are at most 2x too high. Good enough to spot where time goes, cheap enough for hot paths.
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * record a value
+     * @param value value, negative is recorded as 0
+     */
+    public void record(long value) {
+        long v = Math.max(0, value);
+        buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(v));
+        count.increment();
+        sum.add(v);
+        max.accumulate(v);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * get mean value
+     * @return mean, 0 if empty
+     */
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * estimate percentile
+     * @param percentile 0~1
+     * @return upper bound of bucket holding the percentile, 0 if empty
+     */
+    public long getPercentile(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0)
+            return 0;
+        long rank = (long) Math.ceil(percentile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= Math.max(1, rank))
+                return i == 0 ? 0 : Math.min(max.get(), (1L << i) - 1);
+        }
+        return max.get();
+    }
+
+    /**
+     * format as latency summary, values are nanos
+     * @return String
+     */
+    public String toLatencyString() {
+        return String.format("count=%d mean=%.3fms p50=%.3fms p95=%.3fms p99=%.3fms max=%.3fms",
+                getCount(), getMean() / 1e6, millis(getPercentile(0.5)), millis(getPercentile(0.95)),
+                millis(getPercentile(0.99)), millis(getMax()));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%.1f p50=%d p95=%d p99=%d max=%d",
+                getCount(), getMean(), getPercentile(0.5), getPercentile(0.95), getPercentile(0.99), getMax());
+    }
+
+    private static double millis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,17 @@
+package pers.translate.gtrans.metrics;
+
+/**
+ * Timed phases of one translate request
+ */
+public enum Phase {
+    /** calculate tk of source */
+    TOKEN,
+    /** build api url & post data */
+    BUILD_REQUEST,
+    /** wait for a connection from the pool */
+    POOL_LEASE,
+    /** send request & wait for response head */
+    NETWORK,
+    /** read response body, json result is parsed while it is read */
+    RESPONSE_READ
+}
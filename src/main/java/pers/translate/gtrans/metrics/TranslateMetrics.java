@@ -0,0 +1,54 @@
+package pers.translate.gtrans.metrics;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Metrics listener of GoogleTranslate & HttpClient4
+ * <p>
+ * All methods do nothing by default, implementations override what they need and must be thread safe.
+ */
+public interface TranslateMetrics {
+
+    /**
+     * listener which records nothing
+     */
+    TranslateMetrics NOOP = new TranslateMetrics() {};
+
+    /**
+     * record duration of a phase
+     * @param phase Phase
+     * @param nanos duration
+     */
+    default void recordLatency(Phase phase, long nanos) {}
+
+    /**
+     * record request body size
+     * @param bytes size
+     */
+    default void recordRequestBytes(long bytes) {}
+
+    /**
+     * record response body size
+     * @param bytes size
+     */
+    default void recordResponseBytes(long bytes) {}
+
+    /**
+     * record number of sources sent in one request
+     * @param items count
+     */
+    default void recordBatchSize(int items) {}
+
+    /**
+     * record http status of a response
+     * @param statusCode http status, negative for io error
+     */
+    default void recordStatus(int statusCode) {}
+
+    /**
+     * register a gauge read on demand, like connection pool state
+     * @param name gauge name
+     * @param gauge value supplier
+     */
+    default void registerGauge(String name, LongSupplier gauge) {}
+}
@@ -0,0 +1,75 @@
+package pers.translate.gtrans.api;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pers.translate.gtrans.http.HttpClient4;
+import pers.translate.gtrans.http.HttpStatusException;
+import pers.translate.gtrans.http.RetryPolicy;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * batches sent with the blocking client on an executor, against a stub transport answering "tl:source"
+ */
+class BatchingTranslateTest {
+
+    private final StubTransport transport = new StubTransport();
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private HttpClient4 httpClient4;
+    private GoogleTranslate googleTranslate;
+    private BatchingTranslate batching;
+
+    @BeforeEach
+    void setUp() {
+        httpClient4 = HttpClient4.custom().setTransport(pooled -> transport).build();
+        googleTranslate = new GoogleTranslate(httpClient4);
+        batching = new BatchingTranslate(googleTranslate, 2, 4096, 1000);
+        batching.setExecutor(executor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        batching.close();
+        googleTranslate.close();
+        httpClient4.close();
+        executor.shutdown();
+    }
+
+    @Test
+    void callsAreSentAsOneBulkRequest() throws Exception {
+        CompletableFuture<String> hello = batching.translateAsync("hello", "en", "de");
+        CompletableFuture<String> world = batching.translateAsync("world", "en", "de");
+        assertEquals("de:hello", hello.get());
+        assertEquals("de:world", world.get());
+        assertEquals(1, transport.getRequests());
+    }
+
+    @Test
+    void retryPolicyAppliesToBatches() throws Exception {
+        httpClient4.setRetryPolicy(new RetryPolicy());
+        transport.failNext(1, 503);
+        CompletableFuture<String> hello = batching.translateAsync("hello", "en", "de");
+        batching.flush();
+        assertEquals("de:hello", hello.get());
+        assertEquals(2, transport.getRequests());
+    }
+
+    @Test
+    void failedBatchFailsEveryCall() {
+        transport.failNext(1, 503);
+        CompletableFuture<String> hello = batching.translateAsync("hello", "en", "de");
+        CompletableFuture<String> world = batching.translateAsync("world", "en", "de");
+        ExecutionException e = assertThrows(ExecutionException.class, hello::get);
+        assertInstanceOf(HttpStatusException.class, e.getCause());
+        assertThrows(ExecutionException.class, world::get);
+        assertEquals(1, transport.getRequests());
+    }
+}
@@ -0,0 +1,147 @@
+package pers.translate.gtrans.api;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * split & pack of ChunkPlanner, joined with an identity translator
+ */
+class ChunkPlannerTest {
+
+    @Test
+    void smallSourceIsOneBatch() throws IOException {
+        List<String> source = Arrays.asList("hello", "world");
+        ChunkPlanner.Plan plan = new ChunkPlanner(5000, 128).plan(source);
+        assertTrue(plan.isSingleBatch());
+        assertEquals(source, plan.joinTranslations(plan.getBatches()));
+    }
+
+    @Test
+    void itemBudgetPacksBatches() throws IOException {
+        List<String> source = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+            source.add("item " + i);
+        ChunkPlanner.Plan plan = new ChunkPlanner(5000, 3).plan(source);
+        assertEquals(4, plan.getBatches().size());
+        for (List<String> batch : plan.getBatches())
+            assertTrue(batch.size() <= 3);
+        assertEquals(source, plan.joinTranslations(plan.getBatches()));
+    }
+
+    @Test
+    void largeSourceIsSplitAtSentenceEnd() throws IOException {
+        String source = "First sentence here. Second sentence here. Third sentence here.";
+        ChunkPlanner.Plan plan = new ChunkPlanner(30, 128).plan(Collections.singletonList(source));
+        assertFalse(plan.isSingleBatch());
+        for (List<String> batch : plan.getBatches())
+            for (String piece : batch)
+                assertTrue(utf8Length(piece) <= 30, piece);
+        assertEquals("First sentence here. ", plan.getBatches().get(0).get(0));
+        assertEquals(Collections.singletonList(source), plan.joinTranslations(plan.getBatches()));
+    }
+
+    @Test
+    void trimmedPiecesGetTheirSpaceBack() throws IOException {
+        String source = "aaaa bbbb cccc dddd";
+        ChunkPlanner.Plan plan = new ChunkPlanner(10, 128).plan(Collections.singletonList(source));
+        // a translator drops the trailing space of every piece
+        List<List<String>> trimmed = new ArrayList<>();
+        for (List<String> batch : plan.getBatches()) {
+            List<String> results = new ArrayList<>();
+            for (String piece : batch)
+                results.add(piece.trim());
+            trimmed.add(results);
+        }
+        assertEquals(Collections.singletonList(source), plan.joinTranslations(trimmed));
+    }
+
+    @Test
+    void surrogatePairsAreNeverCut() throws IOException {
+        StringBuilder emoji = new StringBuilder();
+        for (int i = 0; i < 50; i++)
+            emoji.appendCodePoint(0x1f600 + i);
+        ChunkPlanner.Plan plan = new ChunkPlanner(7, 128).plan(Collections.singletonList(emoji.toString()));
+        for (List<String> batch : plan.getBatches()) {
+            for (String piece : batch) {
+                assertFalse(Character.isLowSurrogate(piece.charAt(0)), piece);
+                assertFalse(Character.isHighSurrogate(piece.charAt(piece.length() - 1)), piece);
+                assertTrue(utf8Length(piece) <= 7);
+            }
+        }
+        assertEquals(Collections.singletonList(emoji.toString()), plan.joinTranslations(plan.getBatches()));
+    }
+
+    @Test
+    void randomSourcesRoundTrip() throws IOException {
+        Random random = new Random(3);
+        String[] words = {"hello", "你好", "世界。", "😀", "end.", "a", "안녕"};
+        for (int round = 0; round < 300; round++) {
+            List<String> source = new ArrayList<>();
+            int items = 1 + random.nextInt(20);
+            for (int i = 0; i < items; i++) {
+                StringBuilder item = new StringBuilder();
+                int length = random.nextInt(60);
+                for (int w = 0; w < length; w++)
+                    item.append(words[random.nextInt(words.length)]).append(random.nextBoolean() ? " " : "");
+                source.add(item.toString());
+            }
+            int maxBytes = 4 + random.nextInt(200);
+            int maxItems = 1 + random.nextInt(10);
+            ChunkPlanner.Plan plan = new ChunkPlanner(maxBytes, maxItems).plan(source);
+            for (List<String> batch : plan.getBatches()) {
+                assertTrue(batch.size() <= maxItems);
+                int bytes = 0;
+                for (String piece : batch)
+                    bytes += utf8Length(piece);
+                assertTrue(batch.size() == 1 || bytes <= maxBytes);
+            }
+            assertEquals(source, plan.joinTranslations(plan.getBatches()));
+            assertEquals(source.size(), plan.firstOfEach(plan.getBatches()).size());
+        }
+    }
+
+    @Test
+    void firstOfEachPicksFirstPiece() throws IOException {
+        List<String> source = Arrays.asList("one. two. three.", "four");
+        ChunkPlanner.Plan plan = new ChunkPlanner(6, 128).plan(source);
+        List<List<String>> languages = new ArrayList<>();
+        int n = 0;
+        for (List<String> batch : plan.getBatches()) {
+            List<String> results = new ArrayList<>();
+            for (int i = 0; i < batch.size(); i++)
+                results.add("lang" + n++);
+            languages.add(results);
+        }
+        List<String> first = plan.firstOfEach(languages);
+        assertEquals(2, first.size());
+        assertEquals("lang0", first.get(0));
+        assertEquals("lang" + (n - 1), first.get(1));
+    }
+
+    @Test
+    void wrongResultSizeFails() {
+        List<String> source = Arrays.asList("a", "b", "c");
+        ChunkPlanner.Plan plan = new ChunkPlanner(5000, 2).plan(source);
+        List<List<String>> results = new ArrayList<>(plan.getBatches());
+        results.set(1, Collections.emptyList());
+        assertThrows(IOException.class, () -> plan.joinTranslations(results));
+        results.set(1, null);
+        assertThrows(IOException.class, () -> plan.firstOfEach(results));
+    }
+
+    private static int utf8Length(String s) {
+        return s.getBytes(StandardCharsets.UTF_8).length;
+    }
+}
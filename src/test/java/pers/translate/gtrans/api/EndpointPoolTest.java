@@ -0,0 +1,117 @@
+package pers.translate.gtrans.api;
+
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.junit.jupiter.api.Test;
+import pers.translate.gtrans.http.HttpStatusException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EndpointPoolTest {
+
+    private final Endpoint a = new Endpoint("https://a.example/translate_a/t", Endpoint.DEFAULT_CLIENT);
+    private final Endpoint b = new Endpoint("https://b.example/translate_a/t", Endpoint.DEFAULT_CLIENT);
+
+    @Test
+    void ejectedAfterFailuresInARow() {
+        EndpointPool pool = new EndpointPool(Arrays.asList(a, b), 3, 60000);
+        for (int i = 0; i < 2; i++) {
+            pool.onStart(a);
+            assertFalse(pool.onFailure(a));
+        }
+        pool.onStart(a);
+        assertTrue(pool.onFailure(a));
+        assertTrue(a.isEjected());
+        assertEquals(0, a.getOutstanding());
+
+        // only the healthy endpoint is selected now
+        for (int i = 0; i < 50; i++)
+            assertSame(b, pool.select());
+        assertNull(pool.selectOther(b));
+        assertSame(b, pool.selectOther(a));
+    }
+
+    @Test
+    void successResetsFailures() {
+        EndpointPool pool = new EndpointPool(Arrays.asList(a, b), 2, 60000);
+        pool.onStart(a);
+        pool.onFailure(a);
+        pool.onStart(a);
+        pool.onSuccess(a, 1000000);
+        pool.onStart(a);
+        assertFalse(pool.onFailure(a));
+        assertFalse(a.isEjected());
+    }
+
+    @Test
+    void finishDoesNotCountAsFailure() {
+        EndpointPool pool = new EndpointPool(Arrays.asList(a, b), 1, 60000);
+        for (int i = 0; i < 10; i++) {
+            pool.onStart(a);
+            pool.onFinish(a);
+        }
+        assertFalse(a.isEjected());
+        assertEquals(0, a.getOutstanding());
+    }
+
+    @Test
+    void allEjectedStillSelectsOne() {
+        EndpointPool pool = new EndpointPool(Arrays.asList(a, b), 1, 60000);
+        pool.onStart(a);
+        pool.onFailure(a);
+        pool.onStart(b);
+        pool.onFailure(b);
+        assertTrue(a.isEjected() && b.isEjected());
+        // a was ejected first, so it returns first
+        assertSame(a, pool.select());
+    }
+
+    @Test
+    void ejectionEnds() throws InterruptedException {
+        EndpointPool pool = new EndpointPool(Arrays.asList(a, b), 1, 20);
+        pool.onStart(a);
+        pool.onFailure(a);
+        assertTrue(a.isEjected());
+        Thread.sleep(60);
+        assertFalse(a.isEjected());
+    }
+
+    @Test
+    void selectSpreadsOverHealthyEndpoints() {
+        EndpointPool pool = new EndpointPool(Arrays.asList(a, b));
+        Set<Endpoint> selected = new HashSet<>();
+        for (int i = 0; i < 100; i++)
+            selected.add(pool.select());
+        assertEquals(2, selected.size());
+        assertNotSame(a, pool.selectOther(a));
+    }
+
+    @Test
+    void onlyIoFailuresAnd5xxCountAgainstEndpoint() {
+        assertTrue(GoogleTranslate.isEndpointFailure(new ConnectException("refused")));
+        assertTrue(GoogleTranslate.isEndpointFailure(new IOException("reset")));
+        assertTrue(GoogleTranslate.isEndpointFailure(new SocketTimeoutException("read timed out")));
+        assertTrue(GoogleTranslate.isEndpointFailure(new ConnectTimeoutException("connect timed out")));
+        assertTrue(GoogleTranslate.isEndpointFailure(new HttpStatusException(503)));
+
+        assertFalse(GoogleTranslate.isEndpointFailure(new HttpStatusException(400)));
+        assertFalse(GoogleTranslate.isEndpointFailure(new HttpStatusException(429)));
+        assertFalse(GoogleTranslate.isEndpointFailure(new UnexpectedResultException("bad json")));
+        assertFalse(GoogleTranslate.isEndpointFailure(new ConnectionPoolTimeoutException("pool")));
+        assertFalse(GoogleTranslate.isEndpointFailure(new InterruptedIOException("interrupted")));
+        assertFalse(GoogleTranslate.isEndpointFailure(new IllegalStateException("closed")));
+    }
+}
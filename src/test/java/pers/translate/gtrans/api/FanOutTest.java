@@ -0,0 +1,91 @@
+package pers.translate.gtrans.api;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pers.translate.gtrans.cache.LruTranslationCache;
+import pers.translate.gtrans.http.HttpClient4;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * translateToMany & translateDetected against a stub transport answering "tl:source"
+ */
+class FanOutTest {
+
+    private final StubTransport transport = new StubTransport();
+    private HttpClient4 httpClient4;
+    private GoogleTranslate googleTranslate;
+
+    @BeforeEach
+    void setUp() {
+        httpClient4 = HttpClient4.custom().setTransport(pooled -> transport).build();
+        googleTranslate = new GoogleTranslate(httpClient4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        googleTranslate.close();
+        httpClient4.close();
+    }
+
+    @Test
+    void everyLanguageGetsItsTranslations() throws IOException {
+        List<String> source = Arrays.asList("hello", "world");
+        Map<String, List<String>> results = googleTranslate.translateToMany(source, "en", languages("de", "fr", "ja"));
+        assertEquals(Arrays.asList("de", "fr", "ja"), new ArrayList<>(results.keySet()));
+        assertEquals(Arrays.asList("fr:hello", "fr:world"), results.get("fr"));
+        assertEquals(3, transport.getRequests());
+    }
+
+    @Test
+    void cachedTranslationsAreNotSent() throws IOException {
+        googleTranslate.setCache(new LruTranslationCache());
+        List<String> source = Arrays.asList("hello", "world");
+        googleTranslate.translateToMany(Collections.singletonList("hello"), "en", languages("de"));
+        transport.resetRequests();
+        Map<String, List<String>> results = googleTranslate.translateToMany(source, "en", languages("de", "fr"));
+        assertEquals(Arrays.asList("de:hello", "de:world"), results.get("de"));
+        assertEquals(Arrays.asList("fr:hello", "fr:world"), results.get("fr"));
+        assertEquals(2, transport.getRequests());
+
+        transport.resetRequests();
+        assertEquals(results, googleTranslate.translateToMany(source, "en", languages("de", "fr")));
+        assertEquals(0, transport.getRequests());
+    }
+
+    @Test
+    void chunksOfEveryLanguageAreJoined() throws IOException {
+        googleTranslate.setChunking(5000, 2, 4);
+        List<String> source = Arrays.asList("a", "b", "c", "d", "e");
+        Map<String, List<String>> results = googleTranslate.translateToMany(source, "en", languages("de", "fr"), 3);
+        assertEquals(Arrays.asList("de:a", "de:b", "de:c", "de:d", "de:e"), results.get("de"));
+        assertEquals(6, transport.getRequests());
+    }
+
+    @Test
+    void detectedSourcesAreTranslatedByGroup() throws IOException {
+        List<String> source = Arrays.asList("hallo", "bonjour", "welt");
+        List<DetectedTranslation> detected = Arrays.asList(
+                new DetectedTranslation("de", "en", "hello"),
+                new DetectedTranslation("fr", "en", "good day"),
+                new DetectedTranslation("de", "en", "world"));
+        Map<String, List<String>> results = googleTranslate.translateDetected(source, detected, languages("en", "de"));
+        assertEquals(Arrays.asList("hello", "good day", "world"), results.get("en"));
+        assertEquals(Arrays.asList("hallo", "de:bonjour", "welt"), results.get("de"));
+        assertEquals(1, transport.getRequests());
+    }
+
+    private static Set<String> languages(String... languages) {
+        return new LinkedHashSet<>(Arrays.asList(languages));
+    }
+}
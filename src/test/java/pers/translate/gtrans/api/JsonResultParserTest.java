@@ -0,0 +1,94 @@
+package pers.translate.gtrans.api;
+
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.jupiter.api.Test;
+import pers.translate.gtrans.cache.LruTranslationCache;
+import pers.translate.gtrans.http.HttpClient4;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JsonResultParserTest {
+
+    private static final String SINGLE = "[\"hallo\",\"en\",null]";
+    private static final String MULTIPLE = "[[[[[\"hallo\"]],null,\"en\"],[[[\"welt\"]],null,\"en\"]],null]";
+    private static final String SHORT = "[[[[[\"hallo\"]],null,\"en\"]],null]";
+
+    @Test
+    void parsesTranslations() throws IOException {
+        assertEquals(Collections.singletonList("hallo"), new JsonResultParser(false, 1).parse(new StringReader(SINGLE)));
+        assertEquals(Arrays.asList("hallo", "welt"), new JsonResultParser(false, 2).parse(new StringReader(MULTIPLE)));
+    }
+
+    @Test
+    void parsesDetectedLanguages() throws IOException {
+        assertEquals(Collections.singletonList("en"), new JsonResultParser(true, 1).parse(new StringReader(SINGLE)));
+        assertEquals(Arrays.asList("en", "en"), new JsonResultParser(true, 2).parse(new StringReader(MULTIPLE)));
+    }
+
+    @Test
+    void shortResultFails() {
+        assertThrows(UnexpectedResultException.class,
+                () -> new JsonResultParser(false, 2).parse(new StringReader(SHORT)));
+        assertThrows(UnexpectedResultException.class,
+                () -> new JsonResultParser(true, 3).parse(new StringReader(MULTIPLE)));
+        assertThrows(UnexpectedResultException.class,
+                () -> new DetectedResultParser("de", 2).parse(stream(SHORT)));
+    }
+
+    @Test
+    void detectedResultParserReadsBoth() throws IOException {
+        List<DetectedTranslation> results = new DetectedResultParser("de", 2).parse(stream(MULTIPLE));
+        assertEquals(2, results.size());
+        assertEquals("welt", results.get(1).getTranslation());
+        assertEquals("en", results.get(1).getLanguage());
+    }
+
+    @Test
+    void malformedResultFails() {
+        assertThrows(UnexpectedResultException.class,
+                () -> new JsonResultParser(false, 2).parse(new StringReader("[{\"error\":1}]")));
+    }
+
+    @Test
+    void shortBulkAnswerFailsTranslate() {
+        HttpClient4 httpClient4 = HttpClient4.custom().setTransport(pooled -> request -> {
+            StubResponse response = new StubResponse();
+            response.setEntity(new StringEntity(SHORT, StandardCharsets.UTF_8));
+            return response;
+        }).build();
+        try (GoogleTranslate googleTranslate = new GoogleTranslate(httpClient4)) {
+            googleTranslate.setCache(new LruTranslationCache());
+            assertThrows(UnexpectedResultException.class,
+                    () -> googleTranslate.translate(Arrays.asList("hello", "world"), "en", "de"));
+        } finally {
+            httpClient4.close();
+        }
+    }
+
+    private static class StubResponse extends BasicHttpResponse implements CloseableHttpResponse {
+
+        StubResponse() {
+            super(HttpVersion.HTTP_1_1, 200, "OK");
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static ByteArrayInputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
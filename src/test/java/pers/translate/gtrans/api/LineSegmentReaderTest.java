@@ -0,0 +1,82 @@
+package pers.translate.gtrans.api;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LineSegmentReaderTest {
+
+    @Test
+    void keepsEveryKindOfLineBreak() throws IOException {
+        List<LineSegment> segments = read("a\nb\r\nc\rd", 8192);
+        assertEquals(4, segments.size());
+        assertSegment(segments.get(0), "a", "\n");
+        assertSegment(segments.get(1), "b", "\r\n");
+        assertSegment(segments.get(2), "c", "\r");
+        assertSegment(segments.get(3), "d", "");
+    }
+
+    @Test
+    void blankLines() throws IOException {
+        List<LineSegment> segments = read("\n  \r\n\r", 8192);
+        assertEquals(3, segments.size());
+        for (LineSegment segment : segments)
+            assertTrue(segment.blank);
+        assertSegment(segments.get(1), "  ", "\r\n");
+        assertSegment(segments.get(2), "", "\r");
+    }
+
+    @Test
+    void emptyInput() throws IOException {
+        assertNull(new LineSegmentReader(new StringReader("")).read());
+    }
+
+    @Test
+    void crLfAcrossBufferEnd() throws IOException {
+        // "\r" is the last char of the first block, "\n" the first of the next
+        List<LineSegment> segments = read("abc\r\ndef", 4);
+        assertEquals(2, segments.size());
+        assertSegment(segments.get(0), "abc", "\r\n");
+        assertSegment(segments.get(1), "def", "");
+    }
+
+    @Test
+    void randomInputRestoresText() throws IOException {
+        Random random = new Random(11);
+        char[] alphabet = {'a', 'b', ' ', '\r', '\n', '中'};
+        for (int round = 0; round < 5000; round++) {
+            StringBuilder text = new StringBuilder();
+            int length = random.nextInt(50);
+            for (int i = 0; i < length; i++)
+                text.append(alphabet[random.nextInt(alphabet.length)]);
+            StringBuilder restored = new StringBuilder();
+            for (LineSegment segment : read(text.toString(), 1 + random.nextInt(8))) {
+                assertTrue(segment.text.indexOf('\r') < 0 && segment.text.indexOf('\n') < 0);
+                restored.append(segment.text).append(segment.lineBreak);
+            }
+            assertEquals(text.toString(), restored.toString());
+        }
+    }
+
+    private static List<LineSegment> read(String text, int bufferSize) throws IOException {
+        LineSegmentReader in = new LineSegmentReader(new StringReader(text), bufferSize);
+        List<LineSegment> segments = new ArrayList<>();
+        LineSegment segment;
+        while ((segment = in.read()) != null)
+            segments.add(segment);
+        return segments;
+    }
+
+    private static void assertSegment(LineSegment segment, String text, String lineBreak) {
+        assertEquals(text, segment.text);
+        assertEquals(lineBreak, segment.lineBreak);
+    }
+}
@@ -0,0 +1,71 @@
+package pers.translate.gtrans.api;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pers.translate.gtrans.http.HttpClient4;
+import pers.translate.gtrans.http.HttpStatusException;
+import pers.translate.gtrans.http.RetryPolicy;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * batches sent with the blocking client on an executor, against a stub transport answering "tl:source"
+ */
+class StreamingTranslateTest {
+
+    private static final String TEXT = "one\ntwo\n\nthree\r\nfour\nfive";
+
+    private final StubTransport transport = new StubTransport();
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private HttpClient4 httpClient4;
+    private GoogleTranslate googleTranslate;
+    private StreamingTranslate streaming;
+
+    @BeforeEach
+    void setUp() {
+        httpClient4 = HttpClient4.custom().setTransport(pooled -> transport).build();
+        googleTranslate = new GoogleTranslate(httpClient4);
+        streaming = new StreamingTranslate(googleTranslate, 2, 4096, 2);
+        streaming.setExecutor(executor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        googleTranslate.close();
+        httpClient4.close();
+        executor.shutdown();
+    }
+
+    @Test
+    void linesAreWrittenInOrder() throws IOException {
+        StringWriter out = new StringWriter();
+        assertEquals(5, streaming.translate(new StringReader(TEXT), out, "en", "de"));
+        assertEquals("de:one\nde:two\n\nde:three\r\nde:four\nde:five", out.toString());
+        assertEquals(3, transport.getRequests());
+    }
+
+    @Test
+    void retryPolicyAppliesToBatches() throws IOException {
+        httpClient4.setRetryPolicy(new RetryPolicy());
+        transport.failNext(1, 503);
+        StringWriter out = new StringWriter();
+        streaming.translate(new StringReader("one\ntwo"), out, "en", "de");
+        assertEquals("de:one\nde:two", out.toString());
+        assertEquals(2, transport.getRequests());
+    }
+
+    @Test
+    void failedBatchFailsTranslate() {
+        transport.failNext(1, 503);
+        assertThrows(HttpStatusException.class,
+                () -> streaming.translate(new StringReader("one\ntwo"), new StringWriter(), "en", "de"));
+    }
+}
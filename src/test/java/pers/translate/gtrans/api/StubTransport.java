@@ -0,0 +1,88 @@
+package pers.translate.gtrans.api;
+
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpVersion;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+import pers.translate.gtrans.http.Transport;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Transport answering every source with "tl:source" in the api's json layout, without the network
+ */
+class StubTransport implements Transport {
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+    private volatile int failureStatus;
+
+    /**
+     * answer the next requests with a status instead of a result
+     * @param count number of requests
+     * @param statusCode http status
+     */
+    void failNext(int count, int statusCode) {
+        failureStatus = statusCode;
+        failures.set(count);
+    }
+
+    int getRequests() {
+        return requests.get();
+    }
+
+    void resetRequests() {
+        requests.set(0);
+    }
+
+    @Override
+    public CloseableHttpResponse execute(HttpUriRequest request) throws IOException {
+        requests.incrementAndGet();
+        if (failures.getAndDecrement() > 0)
+            return new StubResponse(failureStatus);
+
+        String toLang = null;
+        for (NameValuePair param : URLEncodedUtils.parse(request.getURI(), StandardCharsets.UTF_8))
+            if (param.getName().equals("tl"))
+                toLang = param.getValue();
+        String body = EntityUtils.toString(((HttpEntityEnclosingRequest) request).getEntity(), StandardCharsets.UTF_8);
+        List<String> sources = new ArrayList<>();
+        for (NameValuePair param : URLEncodedUtils.parse(body, StandardCharsets.UTF_8))
+            if (param.getName().equals("q"))
+                sources.add(param.getValue());
+
+        StringBuilder json = new StringBuilder();
+        if (sources.size() == 1) {
+            json.append("[\"").append(toLang).append(':').append(sources.get(0)).append("\",\"en\"]");
+        } else {
+            json.append("[[");
+            for (int i = 0; i < sources.size(); i++)
+                json.append(i == 0 ? "" : ",").append("[[[\"").append(toLang).append(':').append(sources.get(i))
+                        .append("\"]],null,\"en\"]");
+            json.append("]]");
+        }
+        StubResponse response = new StubResponse(200);
+        response.setEntity(new StringEntity(json.toString(), StandardCharsets.UTF_8));
+        return response;
+    }
+
+    private static class StubResponse extends BasicHttpResponse implements CloseableHttpResponse {
+
+        StubResponse(int statusCode) {
+            super(HttpVersion.HTTP_1_1, statusCode, statusCode == 200 ? "OK" : "Error");
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
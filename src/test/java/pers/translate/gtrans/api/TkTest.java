@@ -0,0 +1,114 @@
+package pers.translate.gtrans.api;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static java.lang.Character.getNumericValue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * tk of the long arithmetic against the original BigInteger implementation
+ */
+class TkTest {
+
+    private static final BigInteger TKK0 = new BigInteger("406398");
+    private static final BigInteger TKK1 = new BigInteger("2087938574");
+
+    private static GoogleTranslate googleTranslate;
+
+    @BeforeAll
+    static void setUp() {
+        googleTranslate = new GoogleTranslate();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        googleTranslate.close();
+    }
+
+    @Test
+    void sameAsBaselineForFixedInputs() {
+        String[] inputs = {
+                "", "a", "hello world", "The quick brown fox jumps over the lazy dog.",
+                "你好，世界", "안녕하세요 세계", "こんにちは", "😀", "a😀b", "𠀀𠀁", "\u0000\u007f\u0080߿ࠀ￿",
+                "line\r\nbreak\ttab", "%&=+?#"
+        };
+        for (String input : inputs)
+            assertEquals(baselineTk(input), googleTranslate.calculateTk(input), input);
+    }
+
+    @Test
+    void sameAsBaselineForRandomInputs() {
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            String input = randomText(random, random.nextInt(64));
+            assertEquals(baselineTk(input), googleTranslate.calculateTk(input), input);
+        }
+    }
+
+    // ascii, cjk & surrogate pairs mixed
+    private static String randomText(Random random, int codePoints) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < codePoints; i++) {
+            switch (random.nextInt(4)) {
+                case 0:
+                    text.append((char) (0x20 + random.nextInt(0x5f)));
+                    break;
+                case 1:
+                    text.append((char) (0x4e00 + random.nextInt(0x5200)));
+                    break;
+                case 2:
+                    text.appendCodePoint(0x1f600 + random.nextInt(0x50));
+                    break;
+                default:
+                    text.appendCodePoint(0x20000 + random.nextInt(0xa6d0));
+            }
+        }
+        return text.toString();
+    }
+
+    // original implementation
+    private static String baselineTk(String source) {
+        byte[] sourceBytes = source.getBytes(StandardCharsets.UTF_8);
+
+        BigInteger a = TKK0;
+        for (byte k : sourceBytes)
+            a = rl(a.add(new BigInteger(String.valueOf(k & 0xff))), "+-a^+6");
+        a = rl(a, "+-3^+b+-f");
+
+        a = a.xor(TKK1);
+        if (a.compareTo(new BigInteger("0")) < 0)
+            a = (a.and(new BigInteger("2147483647"))).add(new BigInteger("2147483648"));
+        a = a.remainder(new BigInteger("1000000"));
+
+        return String.format("%s.%s", a, a.xor(TKK0));
+    }
+
+    private static BigInteger rl(BigInteger a, String b) {
+        for (int c = 0; c < b.length() - 2; c += 3) {
+            char d = b.charAt(c + 2);
+            int e;
+            if (d >= 'a')
+                e = d - 87;
+            else
+                e = getNumericValue((int) d);
+
+            BigInteger f;
+            if (b.charAt(c + 1) == '+')
+                f = a.shiftRight(e);
+            else
+                f = a.shiftLeft(e);
+
+            if (b.charAt(c) == '+')
+                a = a.add(f).and(new BigInteger("4294967295"));
+            else
+                a = a.xor(f);
+        }
+        return a;
+    }
+}
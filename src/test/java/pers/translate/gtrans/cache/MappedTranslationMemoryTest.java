@@ -0,0 +1,150 @@
+package pers.translate.gtrans.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * reopen & crash recovery of MappedTranslationMemory, crashes are faked by editing the files
+ */
+class MappedTranslationMemoryTest {
+
+    private static final int INDEX_CLEAN_POS = 12;
+    private static final int INDEX_LOG_END_POS = 16;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void reopenAfterClose() throws IOException {
+        try (MappedTranslationMemory memory = new MappedTranslationMemory(dir)) {
+            memory.put("hello", "en", "zh-CN", "你好");
+            memory.put("hello", "en", "ja", "こんにちは");
+            memory.put("😀", "auto", "en", "grinning face");
+            assertEquals("你好", memory.get("hello", "en", "zh-CN"));
+        }
+        try (MappedTranslationMemory memory = new MappedTranslationMemory(dir)) {
+            assertEquals("你好", memory.get("hello", "en", "zh-CN"));
+            assertEquals("こんにちは", memory.get("hello", "en", "ja"));
+            assertEquals("grinning face", memory.get("😀", "auto", "en"));
+            assertNull(memory.get("hello", "en", "ko"));
+            assertEquals(3, memory.stats().getSize());
+        }
+    }
+
+    @Test
+    void overwriteKeepsLatest() throws IOException {
+        try (MappedTranslationMemory memory = new MappedTranslationMemory(dir)) {
+            memory.put("a", "en", "zh-CN", "first");
+            memory.put("a", "en", "zh-CN", "second");
+            assertEquals("second", memory.get("a", "en", "zh-CN"));
+            assertTrue(memory.garbageRatio() > 0);
+        }
+        try (MappedTranslationMemory memory = new MappedTranslationMemory(dir)) {
+            assertEquals("second", memory.get("a", "en", "zh-CN"));
+            assertEquals(1, memory.stats().getSize());
+        }
+    }
+
+    @Test
+    void tornWriteIsCutOff() throws IOException {
+        try (MappedTranslationMemory memory = new MappedTranslationMemory(dir)) {
+            memory.put("one", "en", "zh-CN", "一");
+            memory.put("two", "en", "zh-CN", "二");
+        }
+        // crash while appending: header is written, body is not, index never made clean
+        int logEnd = (int) readIndexLong(INDEX_LOG_END_POS);
+        byte[] key = "en\u0000zh-CN\u0000three".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer torn = ByteBuffer.allocate(12 + key.length);
+        torn.putInt(key.length).putInt(3).putInt(0x12345678).put(key).flip();
+        try (FileChannel log = FileChannel.open(dir.resolve("translation.log"), StandardOpenOption.WRITE)) {
+            log.write(torn, logEnd);
+        }
+        writeIndexInt(INDEX_CLEAN_POS, 0);
+
+        try (MappedTranslationMemory memory = new MappedTranslationMemory(dir)) {
+            assertEquals("一", memory.get("one", "en", "zh-CN"));
+            assertEquals("二", memory.get("two", "en", "zh-CN"));
+            assertNull(memory.get("three", "en", "zh-CN"));
+            assertEquals(2, memory.stats().getSize());
+            // the torn record is overwritten by the next one
+            memory.put("four", "en", "zh-CN", "四");
+        }
+        assertEquals(logEnd + 12 + "en\u0000zh-CN\u0000four".getBytes(StandardCharsets.UTF_8).length
+                + "四".getBytes(StandardCharsets.UTF_8).length, readIndexLong(INDEX_LOG_END_POS));
+        try (MappedTranslationMemory memory = new MappedTranslationMemory(dir)) {
+            assertEquals("一", memory.get("one", "en", "zh-CN"));
+            assertEquals("四", memory.get("four", "en", "zh-CN"));
+            assertNull(memory.get("three", "en", "zh-CN"));
+        }
+    }
+
+    @Test
+    void dirtyIndexIsRebuilt() throws IOException {
+        try (MappedTranslationMemory memory = new MappedTranslationMemory(dir)) {
+            for (int i = 0; i < 5000; i++)
+                memory.put("text " + i, "en", "zh-CN", "文本 " + i);
+            memory.put("text 0", "en", "zh-CN", "changed");
+            memory.sync();
+        }
+        // crash without close: index may miss records, log is intact
+        writeIndexInt(INDEX_CLEAN_POS, 0);
+        try (MappedTranslationMemory memory = new MappedTranslationMemory(dir)) {
+            assertEquals(5000, memory.stats().getSize());
+            assertEquals("changed", memory.get("text 0", "en", "zh-CN"));
+            for (int i = 1; i < 5000; i++)
+                assertEquals("文本 " + i, memory.get("text " + i, "en", "zh-CN"));
+        }
+    }
+
+    @Test
+    void compactDropsGarbage() throws IOException {
+        try (MappedTranslationMemory memory = new MappedTranslationMemory(dir)) {
+            for (int round = 0; round < 3; round++)
+                for (int i = 0; i < 100; i++)
+                    memory.put("text " + i, "en", "zh-CN", "round " + round);
+            assertTrue(memory.garbageRatio() > 0.5);
+            memory.compact();
+            assertEquals(0, memory.garbageRatio());
+            assertEquals("round 2", memory.get("text 42", "en", "zh-CN"));
+        }
+        try (MappedTranslationMemory memory = new MappedTranslationMemory(dir)) {
+            assertEquals(100, memory.stats().getSize());
+            assertEquals("round 2", memory.get("text 99", "en", "zh-CN"));
+        }
+    }
+
+    @Test
+    void closedMemoryRejectsCalls() throws IOException {
+        MappedTranslationMemory memory = new MappedTranslationMemory(dir);
+        memory.close();
+        assertThrows(IllegalStateException.class, () -> memory.get("a", "en", "zh-CN"));
+    }
+
+    private long readIndexLong(int position) throws IOException {
+        try (FileChannel index = FileChannel.open(dir.resolve("translation.idx"), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(8);
+            index.read(buffer, position);
+            return buffer.getLong(0);
+        }
+    }
+
+    private void writeIndexInt(int position, int value) throws IOException {
+        try (FileChannel index = FileChannel.open(dir.resolve("translation.idx"), StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(4);
+            buffer.putInt(0, value);
+            index.write(buffer, position);
+        }
+    }
+}
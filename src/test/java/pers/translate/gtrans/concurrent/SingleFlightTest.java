@@ -0,0 +1,178 @@
+package pers.translate.gtrans.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SingleFlightTest {
+
+    private static final int CALLERS = 8;
+
+    @Test
+    void identicalCallsRunOnce() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<String>> results = runConcurrently(flight, "key", () -> {
+            calls.incrementAndGet();
+            await(release);
+            return "result";
+        }, release);
+        for (Future<String> result : results)
+            assertEquals("result", result.get(5, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+        assertEquals(0, flight.size());
+    }
+
+    @Test
+    void errorIsShared() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<String>> results = runConcurrently(flight, "key", () -> {
+            calls.incrementAndGet();
+            await(release);
+            throw new IOException("boom");
+        }, release);
+        for (Future<String> result : results) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IOException.class, e.getCause());
+            assertEquals("boom", e.getCause().getMessage());
+        }
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void completedCallRunsAgain() throws IOException {
+        SingleFlight<String, Integer> flight = new SingleFlight<>();
+        AtomicInteger calls = new AtomicInteger();
+        assertEquals(1, flight.execute("key", calls::incrementAndGet));
+        assertEquals(2, flight.execute("key", calls::incrementAndGet));
+        assertEquals(0, flight.size());
+    }
+
+    @Test
+    void differentKeysDoNotWait() throws IOException {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        String result = flight.execute("a", () -> flight.execute("b", () -> "b") + "a");
+        assertEquals("ba", result);
+    }
+
+    @Test
+    void shareCopiesResult() throws Exception {
+        SingleFlight<String, List<String>> flight = new SingleFlight<>(ArrayList::new);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> shared = new ArrayList<>();
+        shared.add("x");
+        List<Future<List<String>>> results = runConcurrently(flight, "key", () -> {
+            await(release);
+            return shared;
+        }, release);
+        List<List<String>> lists = new ArrayList<>();
+        for (Future<List<String>> result : results)
+            lists.add(result.get(5, TimeUnit.SECONDS));
+        for (List<String> list : lists) {
+            assertEquals(shared, list);
+            assertNotSame(shared, list);
+        }
+        assertNotSame(lists.get(0), lists.get(1));
+    }
+
+    @Test
+    void asyncCallsAreJoined() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        AtomicInteger calls = new AtomicInteger();
+        CompletableFuture<String> started = new CompletableFuture<>();
+        CompletableFuture<String> first = flight.executeAsync("key", () -> {
+            calls.incrementAndGet();
+            return started;
+        });
+        CompletableFuture<String> second = flight.executeAsync("key", () -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture("other");
+        });
+        assertEquals(1, flight.size());
+        started.complete("result");
+        assertEquals("result", first.get(5, TimeUnit.SECONDS));
+        assertEquals("result", second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+        assertEquals(0, flight.size());
+
+        // finished, so the next call starts again
+        assertEquals("other", flight.executeAsync("key",
+                () -> CompletableFuture.completedFuture("other")).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void asyncErrorIsShared() {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        CompletableFuture<String> started = new CompletableFuture<>();
+        CompletableFuture<String> first = flight.executeAsync("key", () -> started);
+        CompletableFuture<String> second = flight.executeAsync("key", () -> started);
+        IOException error = new IOException("boom");
+        started.completeExceptionally(error);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+        assertSame(error, e.getCause());
+        e = assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS));
+        assertSame(error, e.getCause());
+        assertEquals(0, flight.size());
+    }
+
+    @Test
+    void asyncStartFailureIsRemoved() {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        assertThrows(IllegalStateException.class, () -> flight.executeAsync("key", () -> {
+            throw new IllegalStateException("closed");
+        }));
+        assertEquals(0, flight.size());
+    }
+
+    /**
+     * start CALLERS threads calling the same key, release the call once all of them wait
+     */
+    private static <V> List<Future<V>> runConcurrently(SingleFlight<String, V> flight, String key,
+                                                       SingleFlight.Call<V> call, CountDownLatch release)
+            throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        try {
+            List<Future<V>> results = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++)
+                results.add(executor.submit(() -> flight.execute(key, call)));
+            // the owner is blocked in call, the others join it
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (flight.size() == 0 && System.nanoTime() < deadline)
+                Thread.sleep(1);
+            Thread.sleep(50);
+            release.countDown();
+            return results;
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        }
+    }
+
+    private static void await(CountDownLatch latch) throws IOException {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+    }
+}
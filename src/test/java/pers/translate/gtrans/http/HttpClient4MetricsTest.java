@@ -0,0 +1,35 @@
+package pers.translate.gtrans.http;
+
+import org.junit.jupiter.api.Test;
+import pers.translate.gtrans.limit.AdaptiveConcurrencyLimit;
+import pers.translate.gtrans.limit.RateLimiter;
+import pers.translate.gtrans.metrics.InMemoryMetrics;
+
+import java.io.InterruptedIOException;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HttpClient4MetricsTest {
+
+    @Test
+    void rateLimiterStateIsReportedAsGauges() throws InterruptedIOException {
+        try (HttpClient4 httpClient4 = new HttpClient4()) {
+            InMemoryMetrics metrics = new InMemoryMetrics();
+            httpClient4.setMetrics(metrics);
+            assertEquals(0L, metrics.getGauges().get("limiter.limit"));
+
+            RateLimiter limiter = new RateLimiter(0, 0, new AdaptiveConcurrencyLimit(8, 1, 16, 0.5, 0));
+            httpClient4.setRateLimiter(limiter);
+            RateLimiter.Permit first = limiter.acquire(10);
+            limiter.acquire(10).release(503);
+            Map<String, Long> gauges = metrics.getGauges();
+            assertEquals(4L, gauges.get("limiter.limit"));
+            assertEquals(1L, gauges.get("limiter.inflight"));
+            assertEquals(0L, gauges.get("limiter.throttled"));
+            assertEquals(1L, gauges.get("limiter.overloads"));
+            first.release(200);
+            assertEquals(0L, metrics.getGauges().get("limiter.inflight"));
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package pers.translate.gtrans.http;
+
+import org.apache.http.NameValuePair;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.util.ByteArrayBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParamPairListTest {
+
+    @Test
+    void pairListIsLive() {
+        for (ParamPairList data : new ParamPairList[]{new ParamPairList(), new ParamPairList(4, true)}) {
+            data.add("sl", "en");
+            List<NameValuePair> pairs = data.getPairList();
+            pairs.add(new BasicNameValuePair("q", "hello"));
+            assertEquals(2, data.size());
+            assertEquals("hello", data.findParamPairByKey("q").getValue());
+            assertTrue(data.isParamPairExist("q", "hello"));
+
+            pairs.set(1, new BasicNameValuePair("q", "world"));
+            assertFalse(data.isParamPairExist("q", "hello"));
+            assertEquals(1, data.findAllParamPairByKey("q").size());
+
+            pairs.remove(0);
+            assertNull(data.findParamPairByKey("sl"));
+            assertEquals("q=world", new String(encode(data), StandardCharsets.US_ASCII));
+        }
+    }
+
+    private static byte[] encode(ParamPairList data) {
+        ByteArrayBuffer buffer = new ByteArrayBuffer(16);
+        data.writeUrlEncoded(buffer);
+        return buffer.toByteArray();
+    }
+}
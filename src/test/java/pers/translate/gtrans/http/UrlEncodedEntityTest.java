@@ -0,0 +1,145 @@
+package pers.translate.gtrans.http;
+
+import org.apache.http.NameValuePair;
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.util.ByteArrayBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * streaming urlencoding against URLEncodedUtils
+ */
+class UrlEncodedEntityTest {
+
+    @Test
+    void sameBytesAsUrlEncodedUtils() throws IOException {
+        ParamPairList data = new ParamPairList();
+        data.add("q", "hello world");
+        data.add("q", "a+b=c&d%e/f?g#h~i*j'k(l)m!n");
+        data.add("q", "你好，世界");
+        data.add("q", "😀 𠀀");
+        data.add("q", "");
+        data.add("sl", "auto");
+        assertEncoded(data);
+    }
+
+    @Test
+    void sameBytesForRandomParams() throws IOException {
+        Random random = new Random(7);
+        for (int i = 0; i < 200; i++) {
+            ParamPairList data = new ParamPairList();
+            int pairs = random.nextInt(20);
+            for (int p = 0; p < pairs; p++)
+                data.add("q", randomText(random, random.nextInt(3000)));
+            assertEncoded(data);
+        }
+    }
+
+    @Test
+    void emptyBody() throws IOException {
+        assertEncoded(new ParamPairList());
+    }
+
+    private static void assertEncoded(ParamPairList data) throws IOException {
+        List<NameValuePair> pairs = data.getPairList();
+        byte[] expected = URLEncodedUtils.format(pairs, StandardCharsets.UTF_8).getBytes(StandardCharsets.US_ASCII);
+
+        assertEquals(expected.length, data.urlEncodedLength());
+        ByteArrayBuffer buffer = new ByteArrayBuffer(16);
+        data.writeUrlEncoded(buffer);
+        assertArrayEquals(expected, buffer.toByteArray());
+
+        // small buffers split escapes & surrogate pairs between writes
+        for (ByteBufferPool pool : new ByteBufferPool[]{
+                new ByteBufferPool(64, 4, false), new ByteBufferPool(64, 4, true), new ByteBufferPool()}) {
+            UrlEncodedEntity entity = new UrlEncodedEntity(data, pool);
+            assertEquals(expected.length, entity.getContentLength());
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            entity.writeTo(out);
+            assertArrayEquals(expected, out.toByteArray());
+            // repeatable
+            out.reset();
+            entity.writeTo(out);
+            assertArrayEquals(expected, out.toByteArray());
+            try (InputStream content = entity.getContent()) {
+                assertArrayEquals(expected, readAll(content));
+            }
+            assertArrayEquals(expected, produce(entity));
+            assertArrayEquals(expected, produce(entity));
+        }
+    }
+
+    /**
+     * run produceContent against a channel taking at most 10 bytes per write
+     */
+    private static byte[] produce(UrlEncodedEntity entity) throws IOException {
+        CollectingEncoder encoder = new CollectingEncoder();
+        while (!encoder.isCompleted())
+            entity.produceContent(encoder, null);
+        return encoder.out.toByteArray();
+    }
+
+    private static class CollectingEncoder implements ContentEncoder {
+
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private boolean completed;
+
+        @Override
+        public int write(ByteBuffer src) {
+            int n = Math.min(10, src.remaining());
+            for (int i = 0; i < n; i++)
+                out.write(src.get());
+            return n;
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+        }
+
+        @Override
+        public boolean isCompleted() {
+            return completed;
+        }
+    }
+
+    private static String randomText(Random random, int chars) {
+        StringBuilder text = new StringBuilder();
+        while (text.length() < chars) {
+            switch (random.nextInt(4)) {
+                case 0:
+                    text.append((char) (0x20 + random.nextInt(0x5f)));
+                    break;
+                case 1:
+                    text.append((char) (0x80 + random.nextInt(0x780)));
+                    break;
+                case 2:
+                    text.append((char) (0x4e00 + random.nextInt(0x5200)));
+                    break;
+                default:
+                    text.appendCodePoint(0x10000 + random.nextInt(0x10000));
+            }
+        }
+        return text.toString();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) != -1)
+            out.write(buffer, 0, n);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,107 @@
+package pers.translate.gtrans.limit;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveConcurrencyLimitTest {
+
+    private static final long MILLISECOND = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    void additiveIncrease() throws InterruptedIOException {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(4, 1, 6, 0.5, 0);
+        // limit += 1 / limit per success, about limit successes per step
+        for (int i = 0; i < 5; i++) {
+            limit.acquire();
+            limit.onSuccess(MILLISECOND);
+        }
+        assertEquals(5, limit.getLimit());
+        for (int i = 0; i < 100; i++) {
+            limit.acquire();
+            limit.onSuccess(MILLISECOND);
+        }
+        assertEquals(6, limit.getLimit());
+        assertEquals(0, limit.getInFlight());
+    }
+
+    @Test
+    void multiplicativeDecreaseToFloor() throws InterruptedIOException {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(16, 2, 16, 0.5, 0);
+        limit.acquire();
+        limit.onOverload();
+        assertEquals(8, limit.getLimit());
+        for (int i = 0; i < 5; i++) {
+            limit.acquire();
+            limit.onOverload();
+        }
+        assertEquals(2, limit.getLimit());
+        assertEquals(6, limit.getOverloadCount());
+    }
+
+    @Test
+    void ignoreKeepsLimit() throws InterruptedIOException {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(4, 1, 8, 0.5, 0);
+        for (int i = 0; i < 10; i++) {
+            limit.acquire();
+            limit.onIgnore();
+        }
+        assertEquals(4, limit.getLimit());
+        assertEquals(0, limit.getOverloadCount());
+    }
+
+    @Test
+    void latencySpikeCountsAsOverload() throws InterruptedIOException {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(8, 1, 8, 0.5, 2);
+        for (int i = 0; i < 20; i++) {
+            limit.acquire();
+            limit.onSuccess(10 * MILLISECOND);
+        }
+        assertEquals(8, limit.getLimit());
+        limit.acquire();
+        limit.onSuccess(100 * MILLISECOND);
+        assertEquals(4, limit.getLimit());
+        assertEquals(1, limit.getOverloadCount());
+    }
+
+    @Test
+    void acquireBlocksAtLimit() throws Exception {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 1, 2, 0.5, 0);
+        assertEquals(0, limit.acquire());
+        assertEquals(0, limit.acquire());
+
+        CountDownLatch acquired = new CountDownLatch(1);
+        AtomicLong waited = new AtomicLong();
+        Thread waiter = new Thread(() -> {
+            try {
+                waited.set(limit.acquire());
+                acquired.countDown();
+            } catch (InterruptedIOException ignored) {
+            }
+        });
+        waiter.start();
+        assertFalse(acquired.await(50, TimeUnit.MILLISECONDS));
+        assertEquals(2, limit.getInFlight());
+
+        limit.onIgnore();
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        assertTrue(waited.get() > 0);
+        assertEquals(2, limit.getInFlight());
+        waiter.join();
+    }
+
+    @Test
+    void rejectsBadArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimit(1, 0, 4, 0.5, 0));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimit(8, 1, 4, 0.5, 0));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimit(2, 1, 4, 1, 0));
+    }
+}
@@ -0,0 +1,68 @@
+package pers.translate.gtrans.limit;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketTest {
+
+    @Test
+    void startsFullAndAllowsBurst() {
+        TokenBucket bucket = new TokenBucket(1, 5);
+        for (int i = 0; i < 5; i++)
+            assertTrue(bucket.tryAcquire(1));
+        assertFalse(bucket.tryAcquire(1));
+    }
+
+    @Test
+    void neverHoldsMoreThanCapacity() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(1000, 3);
+        Thread.sleep(20);
+        assertEquals(3, bucket.available(), 1e-9);
+        assertFalse(bucket.tryAcquire(4));
+    }
+
+    @Test
+    void refillsOverTime() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(100, 1);
+        assertTrue(bucket.tryAcquire(1));
+        assertFalse(bucket.tryAcquire(1));
+        Thread.sleep(30);
+        assertTrue(bucket.tryAcquire(1));
+    }
+
+    @Test
+    void acquireWaitsForDebt() throws InterruptedIOException {
+        TokenBucket bucket = new TokenBucket(50, 1);
+        assertEquals(0, bucket.acquire(1));
+        long start = System.nanoTime();
+        long waited = bucket.acquire(1);
+        long elapsed = System.nanoTime() - start;
+        // one token at 50/s takes 20ms
+        assertTrue(waited > TimeUnit.MILLISECONDS.toNanos(10), "waited " + waited);
+        assertTrue(elapsed >= waited);
+    }
+
+    @Test
+    void acquireGoesIntoDebt() throws InterruptedIOException {
+        TokenBucket bucket = new TokenBucket(10, 1);
+        bucket.acquire(1);
+        // a large request waits for its own tokens, later callers wait behind it
+        Thread.currentThread().interrupt();
+        assertThrows(InterruptedIOException.class, () -> bucket.acquire(2));
+        assertTrue(Thread.interrupted());
+        assertTrue(bucket.available() < -1);
+    }
+
+    @Test
+    void rejectsBadArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(1, 0));
+    }
+}